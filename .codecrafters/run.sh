@@ -8,4 +8,7 @@
 
 set -e # Exit on failure
 
-exec java --enable-preview -jar /tmp/codecrafters-build-interpreter-java/codecrafters-interpreter.jar "$@"
+# The class data archive is built by `mvn package` from a training run. A missing or stale one is skipped, and the
+# -Xlog options keep the JVM from saying so on stdout.
+exec java -XX:SharedArchiveFile=/tmp/codecrafters-build-interpreter-java/codecrafters-interpreter.jsa -Xlog:cds=off -Xlog:cds+dynamic=off \
+  --enable-preview -jar /tmp/codecrafters-build-interpreter-java/codecrafters-interpreter.jar "$@"
@@ -0,0 +1,31 @@
+#!/bin/sh
+#
+# Runs every script in src/test/lox on every engine and compares stdout with the script's `// expect: <line>`
+# comments, in order. Prints the failures and exits 1 if there are any.
+#
+# Usage: ./engines_test.sh [extra run options, e.g. --optimize]
+# LOX overrides the command that runs the interpreter (default: the jar `mvn package` builds).
+
+dir=/tmp/codecrafters-build-interpreter-java
+lox=${LOX:-"java --enable-preview -jar $dir/codecrafters-interpreter.jar"}
+scripts=$(dirname "$0")/src/test/lox
+expected=$(mktemp)
+actual=$(mktemp)
+trap 'rm -f "$expected" "$actual"' EXIT
+failed=0
+
+for script in "$scripts"/*.lox; do
+  sed -n 's#^.*// expect: ##p' "$script" > "$expected"
+
+  for engine in tree vm nodes jvm; do
+    $lox run --engine="$engine" "$@" "$script" > "$actual" 2>&1
+
+    if ! cmp -s "$expected" "$actual"; then
+      failed=1
+      echo "FAIL $(basename "$script") --engine=$engine $*"
+      diff "$expected" "$actual" | head -10
+    fi
+  done
+done
+
+exit $failed
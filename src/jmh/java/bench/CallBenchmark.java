@@ -0,0 +1,90 @@
+package bench;
+
+import errors.Errors;
+import jvm.JvmEngine;
+import lexer.Scanner;
+import nodes.NodeInterpreter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import output.OutputSink;
+import parser.Engine;
+import parser.Interpreter;
+import parser.Parser;
+import parser.Resolver;
+import parser.Stmt;
+import vm.VM;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Call throughput on a recursive fib(n), 1.6 million calls for n = 30. The function is declared once per engine, each
+ * operation only runs the call, so the jvm engine compiles fib's body once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class CallBenchmark {
+  private static final String FIB = """
+    fun fib(n) {
+      if (n < 2) return n;
+      return fib(n - 2) + fib(n - 1);
+    }
+    """;
+
+  @Param("30")
+  public int n;
+
+  @Param({"tree", "vm", "nodes", "jvm"})
+  public String engine;
+
+  private List<Stmt> call;
+  private Engine executor;
+
+  @Setup
+  public void setup() {
+    var errors = new Errors();
+    var out = OutputSink.of(OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+    // One resolver for both, so the call finds fib in the global slot the declaration defined.
+    var resolver = new Resolver(errors);
+
+    executor = switch (engine) {
+      case "tree" -> new Interpreter(out, errors);
+      case "vm" -> new VM(out, errors);
+      case "nodes" -> new NodeInterpreter(out, errors);
+      case "jvm" -> new JvmEngine(out, errors);
+      default -> throw new IllegalArgumentException("Unknown engine: " + engine);
+    };
+
+    executor.interpret(parse(FIB, resolver, errors));
+    call = parse("fib(" + n + ");", resolver, errors);
+
+    if (errors.hasErrors()) {
+      throw new IllegalStateException("fib failed to declare");
+    }
+  }
+
+  @Benchmark
+  public void fib() {
+    executor.interpret(call);
+  }
+
+  private static List<Stmt> parse(String source, Resolver resolver, Errors errors) {
+    var tokens = new Scanner(source, errors).scanCompact();
+    return new Parser(tokens.cursor(), errors).parse().getStmts().stream().map(resolver::resolve).toList();
+  }
+}
@@ -0,0 +1,84 @@
+package bench;
+
+import java.util.Random;
+
+/**
+ * Synthetic Lox programs, each stressing one part of the pipeline. Every program is valid and runs without
+ * runtime errors, so the same corpus can feed every phase.
+ */
+public enum Corpus {
+  // Parenthesized expressions nested hundreds of levels deep.
+  NESTING {
+    @Override
+    void statement(StringBuilder out, Random random) {
+      var depth = 200;
+      out.append("print ").append("(".repeat(depth)).append(random.nextInt(100));
+      for (var i = 0; i < depth; i++) {
+        out.append(" + ").append(random.nextInt(100)).append(')');
+      }
+      out.append(";\n");
+    }
+  },
+  // Long flat chains that the parser folds into left-deep trees.
+  CHAIN {
+    @Override
+    void statement(StringBuilder out, Random random) {
+      out.append("print ").append(random.nextInt(100));
+      for (var i = 0; i < 500; i++) {
+        out.append(OPERATORS[random.nextInt(OPERATORS.length)]).append(1 + random.nextInt(100));
+      }
+      out.append(";\n");
+    }
+  },
+  STRINGS {
+    @Override
+    void statement(StringBuilder out, Random random) {
+      out.append("print \"").append(WORDS[random.nextInt(WORDS.length)]).append('"');
+      for (var i = 0; i < 20; i++) {
+        out.append(" + \"").append(WORDS[random.nextInt(WORDS.length)]).append('"');
+      }
+      out.append(" == \"").append(WORDS[random.nextInt(WORDS.length)]).append("\";\n");
+    }
+  },
+  NUMBERS {
+    @Override
+    void statement(StringBuilder out, Random random) {
+      out.append("print ").append(number(random));
+      for (var i = 0; i < 20; i++) {
+        out.append(OPERATORS[random.nextInt(OPERATORS.length)]).append(number(random));
+      }
+      out.append(" < ").append(number(random)).append(";\n");
+    }
+
+    private String number(Random random) {
+      return random.nextInt(10_000) + "." + (1 + random.nextInt(99_999));
+    }
+  },
+  // Mostly comments, with a short statement every few lines.
+  COMMENTS {
+    @Override
+    void statement(StringBuilder out, Random random) {
+      for (var i = 0; i < 10; i++) {
+        out.append("// ").append(WORDS[random.nextInt(WORDS.length)]).append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        out.append(" \"not a string\" (1 + 2) * 3;\n");
+      }
+      out.append("print ").append(random.nextInt(100)).append(" * 2;\n");
+    }
+  };
+
+  private static final String[] OPERATORS = {" + ", " - ", " * ", " / "};
+  private static final String[] WORDS = {"lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit"};
+
+  abstract void statement(StringBuilder out, Random random);
+
+  public String generate(int statements) {
+    var random = new Random(42);
+    var out = new StringBuilder();
+
+    for (var i = 0; i < statements; i++) {
+      statement(out, random);
+    }
+
+    return out.toString();
+  }
+}
@@ -0,0 +1,58 @@
+package bench;
+
+import errors.Errors;
+import lexer.Scanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import output.OutputSink;
+import parser.Interpreter;
+import parser.Parser;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@code run} does for a source already in memory: lex, parse, execute and print.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class EndToEndBenchmark {
+  @Param
+  public Corpus corpus;
+
+  @Param("1000")
+  public int statements;
+
+  private String source;
+  private OutputSink out;
+
+  @Setup
+  public void setup() {
+    source = corpus.generate(statements);
+    out = OutputSink.of(OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public void run() {
+    var errors = new Errors();
+    var tokens = new Scanner(source, errors).scanCompact();
+    var parser = new Parser(tokens.cursor(), errors).parse();
+
+    new Interpreter(out, errors).interpret(parser.getStmts());
+    out.flush();
+  }
+}
@@ -0,0 +1,73 @@
+package bench;
+
+import errors.Errors;
+import jvm.JvmEngine;
+import lexer.Scanner;
+import nodes.NodeInterpreter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import output.OutputSink;
+import parser.Engine;
+import parser.Interpreter;
+import parser.Parser;
+import parser.Stmt;
+import vm.VM;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class EvaluateBenchmark {
+  @Param
+  public Corpus corpus;
+
+  @Param("1000")
+  public int statements;
+
+  @Param({"tree", "vm", "nodes", "jvm"})
+  public String engine;
+
+  private List<Stmt> stmts;
+  private Engine executor;
+
+  @Setup
+  public void setup() {
+    var errors = new Errors();
+    var out = OutputSink.of(OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+    var tokens = new Scanner(corpus.generate(statements), errors).scanCompact();
+
+    // Evaluate without printing, output cost is measured end to end.
+    stmts = new Parser(tokens.cursor(), errors).parse().getStmts().stream()
+      .map(stmt -> stmt instanceof Stmt.Print print ? new Stmt.Expression(print.expr()) : stmt)
+      .toList();
+
+    executor = switch (engine) {
+      case "tree" -> new Interpreter(out, errors);
+      case "vm" -> new VM(out, errors);
+      case "nodes" -> new NodeInterpreter(out, errors);
+      case "jvm" -> new JvmEngine(out, errors);
+      default -> throw new IllegalArgumentException("Unknown engine: " + engine);
+    };
+  }
+
+  @Benchmark
+  public void evaluate() {
+    executor.interpret(stmts);
+  }
+}
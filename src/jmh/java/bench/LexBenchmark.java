@@ -0,0 +1,51 @@
+package bench;
+
+import errors.Errors;
+import lexer.Scanner;
+import lexer.Token;
+import lexer.TokenBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class LexBenchmark {
+  @Param
+  public Corpus corpus;
+
+  @Param("1000")
+  public int statements;
+
+  private String source;
+
+  @Setup
+  public void setup() {
+    source = corpus.generate(statements);
+  }
+
+  @Benchmark
+  public TokenBuffer compact() {
+    return new Scanner(source, new Errors()).scanCompact();
+  }
+
+  @Benchmark
+  public List<Token> tokens() {
+    return new Scanner(source, new Errors()).scan().getTokens();
+  }
+}
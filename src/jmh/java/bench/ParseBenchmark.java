@@ -0,0 +1,47 @@
+package bench;
+
+import errors.Errors;
+import lexer.Scanner;
+import lexer.TokenBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import parser.Parser;
+import parser.Stmt;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ParseBenchmark {
+  @Param
+  public Corpus corpus;
+
+  @Param("1000")
+  public int statements;
+
+  private TokenBuffer tokens;
+
+  @Setup
+  public void setup() {
+    tokens = new Scanner(corpus.generate(statements), new Errors()).scanCompact();
+  }
+
+  @Benchmark
+  public List<Stmt> parse() {
+    return new Parser(tokens.cursor(), new Errors()).parse().getStmts();
+  }
+}
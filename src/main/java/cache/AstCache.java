@@ -0,0 +1,107 @@
+package cache;
+
+import parser.Stmt;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * On-disk cache of parsed programs, one file per distinct source named after its SHA-256. Each entry starts with a
+ * magic number, {@link #FORMAT_VERSION} and the full hash, so entries written by another format or clobbered on disk
+ * are treated as misses. Caching is best-effort: read and write failures never surface to the caller. Expressions
+ * are encoded and decoded without recursion; statements nested deeper than the call stack allows are a failure
+ * like any other.
+ */
+public class AstCache {
+  public static final int FORMAT_VERSION = 1;
+
+  private static final int MAGIC = 0x4c4f5843; // "LOXC"
+  private static final int HEADER_SIZE = 2 * Integer.BYTES;
+  private static final String EXTENSION = ".loxc";
+
+  private final Path directory;
+
+  public AstCache(Path directory) {
+    this.directory = directory;
+  }
+
+  // The default location, a .loxcache directory next to the script.
+  public static AstCache nextTo(Path script) {
+    var parent = script.toAbsolutePath().getParent();
+    return new AstCache(parent.resolve(".loxcache"));
+  }
+
+  public static byte[] hash(byte[] source) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(source);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // Returns the cached statements for this source, or null on a miss.
+  public List<Stmt> load(byte[] hash) {
+    var entry = entry(hash);
+    if (!Files.isRegularFile(entry)) {
+      return null;
+    }
+
+    try {
+      var in = ByteBuffer.wrap(Files.readAllBytes(entry));
+      if (in.remaining() < HEADER_SIZE + hash.length || in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+        return null;
+      }
+
+      var stored = new byte[hash.length];
+      in.get(stored);
+      if (!Arrays.equals(stored, hash)) {
+        return null;
+      }
+
+      var stmts = new AstReader(in).read();
+      return in.hasRemaining() ? null : stmts;
+    } catch (IOException | RuntimeException | StackOverflowError e) {
+      return null;
+    }
+  }
+
+  // Writes to a temporary file first, so concurrent runs never observe a half-written entry.
+  public void store(byte[] hash, List<Stmt> stmts) {
+    Path temp = null;
+
+    try {
+      Files.createDirectories(directory);
+      temp = Files.createTempFile(directory, "entry", ".tmp");
+
+      try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.write(hash);
+        new AstWriter(out).write(stmts);
+      }
+
+      Files.move(temp, entry(hash), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException | StackOverflowError e) {
+      if (temp != null) {
+        try {
+          Files.deleteIfExists(temp);
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
+
+  private Path entry(byte[] hash) {
+    return directory.resolve(HexFormat.of().formatHex(hash) + EXTENSION);
+  }
+}
@@ -0,0 +1,227 @@
+package cache;
+
+import lexer.Token;
+import parser.Expr;
+import parser.Stmt;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes what {@link AstWriter} wrote from an in-memory buffer. Any inconsistency, including running off the end of
+ * the buffer, is reported as an {@link IOException}.
+ */
+class AstReader {
+  private static final Token.Type[] TYPES = Token.Type.values();
+
+  private final ByteBuffer in;
+  private final List<String> strings = new ArrayList<>();
+  private int line;
+
+  AstReader(ByteBuffer in) {
+    this.in = in;
+  }
+
+  List<Stmt> read() throws IOException {
+    try {
+      return readStmts();
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IOException("Truncated cache entry", e);
+    }
+  }
+
+  private List<Stmt> readStmts() throws IOException {
+    var count = readVarInt();
+    var stmts = new ArrayList<Stmt>(Math.min(count, 1 << 16));
+
+    for (var i = 0; i < count; i++) {
+      stmts.add(readStmt());
+    }
+
+    return stmts;
+  }
+
+  private Stmt readStmt() throws IOException {
+    var tag = in.get();
+
+    return switch (tag) {
+      case AstWriter.STMT_EXPRESSION -> new Stmt.Expression(readExpr());
+      case AstWriter.STMT_PRINT -> new Stmt.Print(readExpr());
+      case AstWriter.STMT_VAR -> {
+        var name = readToken();
+        yield new Stmt.Var(name, readExpr());
+      }
+      case AstWriter.STMT_BLOCK -> new Stmt.Block(readStmts());
+      case AstWriter.STMT_FUNCTION -> {
+        var name = readToken();
+        var params = readTokens();
+        yield new Stmt.Function(name, params, readStmts());
+      }
+      case AstWriter.STMT_IF -> {
+        var condition = readExpr();
+        yield new Stmt.If(condition, readStmt(), null);
+      }
+      case AstWriter.STMT_IF_ELSE -> {
+        var condition = readExpr();
+        var thenBranch = readStmt();
+        yield new Stmt.If(condition, thenBranch, readStmt());
+      }
+      case AstWriter.STMT_RETURN -> {
+        var keyword = readToken();
+        yield new Stmt.Return(keyword, readExpr());
+      }
+      default -> throw new IOException("Unknown statement tag: " + tag);
+    };
+  }
+
+  // Reads a pre-order expression with an explicit stack of the nodes whose operands are still being read, expressions
+  // can be deeper than the call stack allows.
+  private Expr readExpr() throws IOException {
+    var partials = new ArrayDeque<Partial>();
+
+    while (true) {
+      var tag = in.get();
+      Expr expr = switch (tag) {
+        case AstWriter.EXPR_LITERAL -> new Expr.Literal(readLiteral());
+        case AstWriter.EXPR_VARIABLE -> new Expr.Variable(readToken());
+        case AstWriter.EXPR_BINARY -> {
+          partials.push(new Partial(tag, readToken(), 2));
+          yield null;
+        }
+        case AstWriter.EXPR_GROUPING -> {
+          partials.push(new Partial(tag, null, 1));
+          yield null;
+        }
+        case AstWriter.EXPR_UNARY, AstWriter.EXPR_ASSIGN, AstWriter.EXPR_CALL -> {
+          partials.push(new Partial(tag, readToken(), 1));
+          yield null;
+        }
+        default -> throw new IOException("Unknown expression tag: " + tag);
+      };
+
+      // Completed nodes complete their parents in turn, up to one still missing operands.
+      while (expr != null) {
+        var parent = partials.peek();
+        if (parent == null) {
+          return expr;
+        }
+
+        parent.operands.add(expr);
+        if (parent.tag == AstWriter.EXPR_CALL && parent.operands.size() == 1) {
+          // The argument count follows the callee.
+          parent.needed += readVarInt();
+        }
+
+        if (parent.operands.size() < parent.needed) {
+          expr = null;
+        } else {
+          partials.pop();
+          expr = parent.build();
+        }
+      }
+    }
+  }
+
+  // A node read up to its operands, `needed` of them.
+  private static final class Partial {
+    private final byte tag;
+    private final Token token;
+    private final List<Expr> operands = new ArrayList<>(2);
+    private int needed;
+
+    private Partial(byte tag, Token token, int needed) {
+      this.tag = tag;
+      this.token = token;
+      this.needed = needed;
+    }
+
+    private Expr build() {
+      return switch (tag) {
+        case AstWriter.EXPR_BINARY -> new Expr.Binary(operands.get(0), operands.get(1), token);
+        case AstWriter.EXPR_GROUPING -> new Expr.Grouping(operands.get(0));
+        case AstWriter.EXPR_UNARY -> new Expr.Unary(operands.get(0), token);
+        case AstWriter.EXPR_ASSIGN -> new Expr.Assign(token, operands.get(0));
+        case AstWriter.EXPR_CALL -> new Expr.Call(operands.get(0), token, new ArrayList<>(operands.subList(1, operands.size())));
+        default -> throw new IllegalStateException("Unexpected expression tag: " + tag);
+      };
+    }
+  }
+
+  private Object readLiteral() throws IOException {
+    var tag = in.get();
+
+    return switch (tag) {
+      case AstWriter.LITERAL_NIL -> null;
+      case AstWriter.LITERAL_TRUE -> true;
+      case AstWriter.LITERAL_FALSE -> false;
+      case AstWriter.LITERAL_NUMBER -> in.getDouble();
+      case AstWriter.LITERAL_STRING -> readString();
+      case AstWriter.LITERAL_INTEGER -> (double) readVarInt();
+      default -> throw new IOException("Unknown literal tag: " + tag);
+    };
+  }
+
+  private List<Token> readTokens() throws IOException {
+    var count = readVarInt();
+    var tokens = new ArrayList<Token>(Math.min(count, 1 << 8));
+
+    for (var i = 0; i < count; i++) {
+      tokens.add(readToken());
+    }
+
+    return tokens;
+  }
+
+  private Token readToken() throws IOException {
+    var ordinal = Byte.toUnsignedInt(in.get());
+    if (ordinal >= TYPES.length) {
+      throw new IOException("Unknown token type: " + ordinal);
+    }
+
+    var lexeme = readString();
+    var delta = readVarInt();
+    line += (delta >>> 1) ^ -(delta & 1);
+    return new Token(TYPES[ordinal], lexeme, null, line);
+  }
+
+  private String readString() throws IOException {
+    var reference = readVarInt();
+    if (reference > 0) {
+      if (reference > strings.size()) {
+        throw new IOException("Dangling string reference: " + reference);
+      }
+
+      return strings.get(reference - 1);
+    }
+
+    var length = readVarInt();
+    var value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+    in.position(in.position() + length);
+    strings.add(value);
+    return value;
+  }
+
+  private int readVarInt() throws IOException {
+    var value = 0;
+
+    for (var shift = 0; shift < 32; shift += 7) {
+      var b = Byte.toUnsignedInt(in.get());
+      value |= (b & 0x7f) << shift;
+
+      if ((b & 0x80) == 0) {
+        if (value < 0) {
+          throw new IOException("Negative length or count: " + value);
+        }
+
+        return value;
+      }
+    }
+
+    throw new IOException("Malformed variable-length integer");
+  }
+}
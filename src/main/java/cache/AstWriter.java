@@ -0,0 +1,232 @@
+package cache;
+
+import lexer.Token;
+import parser.Expr;
+import parser.Stmt;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of a statement list: one tag byte per node, variable-length integers, and a string table so
+ * repeated lexemes are written once.
+ */
+class AstWriter implements Stmt.Visitor<Void> {
+  static final byte STMT_EXPRESSION = 0, STMT_PRINT = 1, STMT_VAR = 2, STMT_BLOCK = 3, STMT_FUNCTION = 4, STMT_IF = 5,
+      STMT_IF_ELSE = 6, STMT_RETURN = 7;
+  static final byte EXPR_BINARY = 0, EXPR_GROUPING = 1, EXPR_LITERAL = 2, EXPR_UNARY = 3, EXPR_VARIABLE = 4,
+      EXPR_ASSIGN = 5, EXPR_CALL = 6;
+  static final byte LITERAL_NIL = 0, LITERAL_TRUE = 1, LITERAL_FALSE = 2, LITERAL_NUMBER = 3, LITERAL_STRING = 4,
+      LITERAL_INTEGER = 5;
+
+  private final DataOutputStream out;
+  private final Map<String, Integer> strings = new HashMap<>();
+  private int line;
+
+  AstWriter(DataOutputStream out) {
+    this.out = out;
+  }
+
+  void write(List<Stmt> stmts) throws IOException {
+    try {
+      writeVarInt(stmts.size());
+      stmts.forEach(stmt -> stmt.accept(this));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  @Override
+  public Void visitBlockStmt(Stmt.Block stmt) {
+    writeByte(STMT_BLOCK);
+    writeVarInt(stmt.stmts().size());
+    stmt.stmts().forEach(inner -> inner.accept(this));
+    return null;
+  }
+
+  @Override
+  public Void visitExpressionStmt(Stmt.Expression stmt) {
+    writeByte(STMT_EXPRESSION);
+    writeExpr(stmt.expr());
+    return null;
+  }
+
+  @Override
+  public Void visitFunctionStmt(Stmt.Function stmt) {
+    writeByte(STMT_FUNCTION);
+    writeToken(stmt.name());
+    writeVarInt(stmt.params().size());
+    stmt.params().forEach(this::writeToken);
+    writeVarInt(stmt.body().size());
+    stmt.body().forEach(inner -> inner.accept(this));
+    return null;
+  }
+
+  @Override
+  public Void visitIfStmt(Stmt.If stmt) {
+    writeByte(stmt.elseBranch() == null ? STMT_IF : STMT_IF_ELSE);
+    writeExpr(stmt.condition());
+    stmt.thenBranch().accept(this);
+    if (stmt.elseBranch() != null) {
+      stmt.elseBranch().accept(this);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(Stmt.Print stmt) {
+    writeByte(STMT_PRINT);
+    writeExpr(stmt.expr());
+    return null;
+  }
+
+  @Override
+  public Void visitReturnStmt(Stmt.Return stmt) {
+    writeByte(STMT_RETURN);
+    writeToken(stmt.keyword());
+    writeExpr(stmt.value());
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(Stmt.Var stmt) {
+    writeByte(STMT_VAR);
+    writeToken(stmt.name());
+    writeExpr(stmt.initializer());
+    return null;
+  }
+
+  // Pre-order with an explicit stack, expressions can be deeper than the call stack allows. The integers pushed are
+  // argument counts, written when reached so that they land between the callee and the arguments.
+  private void writeExpr(Expr expr) {
+    var pending = new ArrayDeque<Object>();
+    pending.push(expr);
+
+    while (!pending.isEmpty()) {
+      switch (pending.pop()) {
+        case Integer count -> writeVarInt(count);
+        case Expr.Assign assign -> {
+          writeByte(EXPR_ASSIGN);
+          writeToken(assign.name());
+          pending.push(assign.value());
+        }
+        case Expr.Binary binary -> {
+          writeByte(EXPR_BINARY);
+          writeToken(binary.operator());
+          pending.push(binary.right());
+          pending.push(binary.left());
+        }
+        case Expr.Call call -> {
+          writeByte(EXPR_CALL);
+          writeToken(call.paren());
+          for (var i = call.arguments().size() - 1; i >= 0; i--) {
+            pending.push(call.arguments().get(i));
+          }
+          pending.push(call.arguments().size());
+          pending.push(call.callee());
+        }
+        case Expr.Grouping grouping -> {
+          writeByte(EXPR_GROUPING);
+          pending.push(grouping.expr());
+        }
+        case Expr.Literal literal -> writeLiteral(literal.literal());
+        case Expr.Unary unary -> {
+          writeByte(EXPR_UNARY);
+          writeToken(unary.operator());
+          pending.push(unary.right());
+        }
+        case Expr.Variable variable -> {
+          writeByte(EXPR_VARIABLE);
+          writeToken(variable.name());
+        }
+        default -> throw new IllegalStateException();
+      }
+    }
+  }
+
+  private void writeLiteral(Object literal) {
+    writeByte(EXPR_LITERAL);
+
+    switch (literal) {
+      case null -> writeByte(LITERAL_NIL);
+      case Boolean value -> writeByte(value ? LITERAL_TRUE : LITERAL_FALSE);
+      case Double value when isSmallInteger(value) -> {
+        writeByte(LITERAL_INTEGER);
+        writeVarInt(value.intValue());
+      }
+      case Double value -> {
+        writeByte(LITERAL_NUMBER);
+        try {
+          out.writeDouble(value);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      case String value -> {
+        writeByte(LITERAL_STRING);
+        writeString(value);
+      }
+      default -> throw new IllegalStateException("Unexpected literal: " + literal);
+    }
+  }
+
+  // Operator, identifier, keyword and punctuation tokens only: their literal is always null. Lines are zigzag-encoded deltas from the previous token.
+  private void writeToken(Token token) {
+    writeByte((byte) token.type().ordinal());
+    writeString(token.lexeme());
+
+    var delta = token.line() - line;
+    writeVarInt((delta << 1) ^ (delta >> 31));
+    line = token.line();
+  }
+
+  // Integral literals such as line numbers and counters dominate real scripts; -0.0 must keep its sign bit.
+  private static boolean isSmallInteger(double value) {
+    return value >= 0 && value <= Integer.MAX_VALUE && value == Math.floor(value)
+        && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0);
+  }
+
+  // A string is either a back-reference (index + 1) or 0 followed by its UTF-8 bytes.
+  private void writeString(String value) {
+    var index = strings.get(value);
+    if (index != null) {
+      writeVarInt(index + 1);
+      return;
+    }
+
+    strings.put(value, strings.size());
+    var bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarInt(0);
+    writeVarInt(bytes.length);
+
+    try {
+      out.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void writeVarInt(int value) {
+    while ((value & ~0x7f) != 0) {
+      writeByte((byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+
+    writeByte((byte) value);
+  }
+
+  private void writeByte(byte value) {
+    try {
+      out.writeByte(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
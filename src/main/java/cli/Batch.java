@@ -0,0 +1,155 @@
+package cli;
+
+import output.OutputSink;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The {@code batch} command: runs a command over many files in one process, spread over {@code --jobs} threads
+ * (all cores by default), each file with its own {@link Cli}. The target is either a directory, whose {@code .lox}
+ * files all get {@code --command} ({@code run} by default), or a manifest listing one {@code [command] path} per
+ * line, relative to the manifest, with blank and {@code #} lines skipped. Every other option is passed on to each
+ * file's command.
+ * <p>
+ * The output of each file is printed in order under a {@code ==> path (exit N) <==} header, stdout to stdout and
+ * stderr to stderr, followed by a count of files per exit code. The exit code is the first non-zero one of a file.
+ */
+public class Batch {
+  private final Map<String, String> options;
+  private final OutputSink out;
+  private final PrintStream err;
+
+  private record Job(String command, Path path) {
+  }
+
+  public Batch(Map<String, String> options, OutputSink out, PrintStream err) {
+    this.options = options;
+    this.out = out;
+    this.err = err;
+  }
+
+  public int run(String target) {
+    List<Job> jobs;
+    try {
+      jobs = jobs(Path.of(target));
+    } catch (IOException | UncheckedIOException e) {
+      err.println("Error reading file: " + e.getMessage());
+      return 65;
+    }
+
+    var forwarded = new ArrayList<String>();
+    options.forEach((name, value) -> {
+      if (!name.equals("command") && !name.equals("jobs")) {
+        forwarded.add(value.isEmpty() ? "--" + name : "--" + name + "=" + value);
+      }
+    });
+
+    int threads;
+    try {
+      threads = options.containsKey("jobs") ? Integer.parseInt(options.get("jobs")) : Runtime.getRuntime().availableProcessors();
+    } catch (NumberFormatException e) {
+      err.println("Invalid --jobs: " + options.get("jobs"));
+      return 64;
+    }
+
+    var codes = new TreeMap<Integer, Integer>();
+    var exitStatus = 0;
+
+    try (var executor = Executors.newFixedThreadPool(Math.max(1, threads))) {
+      var results = new ArrayList<Future<Capture>>(jobs.size());
+
+      for (var job : jobs) {
+        var args = new ArrayList<String>();
+        args.add(job.command());
+        args.addAll(forwarded);
+        args.add(job.path().toString());
+
+        results.add(executor.submit(() -> Capture.of(args.toArray(String[]::new))));
+      }
+
+      for (var i = 0; i < jobs.size(); i++) {
+        var result = join(results.get(i));
+        var header = "==> " + jobs.get(i).path() + " (exit " + result.code() + ") <==";
+
+        out.println(header);
+        out.write(result.stdout().toByteArray());
+
+        if (result.stderr().size() > 0) {
+          out.flush();
+          err.println(header);
+          err.writeBytes(result.stderr().toByteArray());
+        }
+
+        // Done with this file, let its buffers go.
+        results.set(i, null);
+        codes.merge(result.code(), 1, Integer::sum);
+
+        if (exitStatus == 0) {
+          exitStatus = result.code();
+        }
+      }
+    }
+
+    var summary = new StringBuilder().append(jobs.size()).append(" files:");
+    codes.forEach((code, count) -> summary.append(' ').append(count).append(" exit ").append(code).append(','));
+    summary.setLength(summary.length() - (codes.isEmpty() ? 0 : 1));
+    out.println(summary);
+
+    return exitStatus;
+  }
+
+  private List<Job> jobs(Path target) throws IOException {
+    var command = options.getOrDefault("command", "run");
+
+    if (Files.isDirectory(target)) {
+      try (var files = Files.walk(target)) {
+        return files
+          .filter(path -> Files.isRegularFile(path) && path.toString().endsWith(".lox"))
+          .sorted()
+          .map(path -> new Job(command, path))
+          .toList();
+      }
+    }
+
+    var jobs = new ArrayList<Job>();
+    var base = target.toAbsolutePath().getParent();
+
+    for (var line : Files.readAllLines(target)) {
+      line = line.strip();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      var fields = line.split("\\s+", 2);
+      if (fields.length == 2 && List.of("tokenize", "parse", "evaluate", "run").contains(fields[0])) {
+        jobs.add(new Job(fields[0], base.resolve(fields[1])));
+      } else {
+        jobs.add(new Job(command, base.resolve(line)));
+      }
+    }
+
+    return jobs;
+  }
+
+  private static Capture join(Future<Capture> result) {
+    try {
+      return result.get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
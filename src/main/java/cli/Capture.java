@@ -0,0 +1,31 @@
+package cli;
+
+import output.OutputSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * The exit code, stdout and stderr of one {@link Cli} invocation run against in-memory buffers.
+ */
+public record Capture(int code, ByteArrayOutputStream stdout, ByteArrayOutputStream stderr) {
+  public static Capture of(String[] args) {
+    var stdout = new ByteArrayOutputStream();
+    var stderr = new ByteArrayOutputStream();
+    int code;
+
+    var out = OutputSink.of(stdout, System.out.charset());
+
+    try (var err = new PrintStream(stderr, false, System.err.charset())) {
+      try {
+        code = new Cli(out, err).execute(args);
+      } catch (RuntimeException | StackOverflowError e) {
+        // What the JVM prints before dying on an uncaught exception.
+        err.println("Exception in thread \"main\" " + e);
+        code = 1;
+      }
+    }
+
+    return new Capture(code, stdout, stderr);
+  }
+}
@@ -0,0 +1,438 @@
+package cli;
+
+import cache.AstCache;
+import errors.Errors;
+import jvm.JvmEngine;
+import lexer.ParallelScanner;
+import lexer.Scanner;
+import lexer.TokenBuffer;
+import nodes.NodeInterpreter;
+import optimizer.Pipeline;
+import output.OutputSink;
+import parser.AstPrinter;
+import parser.Budget;
+import parser.Engine;
+import parser.Expr;
+import parser.Interpreter;
+import parser.ParallelParser;
+import parser.Parser;
+import parser.Resolver;
+import parser.Stmt;
+import profile.Profile;
+import profile.Profiler;
+import profile.ProfilingInterpreter;
+import stats.Phase;
+import stats.Stats;
+import vm.VM;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One command line invocation. It writes to its own streams, reports into its own {@link Errors} and returns the
+ * exit code instead of exiting, so any number of invocations can run side by side in one process.
+ * <p>
+ * Stdout is buffered in an {@link OutputSink} and flushed before anything is written to stderr and before
+ * returning, so the two streams interleave the same way whatever the sink's flush policy.
+ * <p>
+ * Scanning, parsing, execution and output are measured as {@link Stats} phases; {@code --stats} prints them as JSON
+ * on stderr after everything else.
+ */
+public class Cli {
+  private final OutputSink out;
+  private final PrintStream err;
+  private final Errors errors = new Errors();
+  private Stats stats = new Stats(false);
+
+  public Cli(OutputSink out, PrintStream err) {
+    this.out = out;
+    this.err = err;
+  }
+
+  // Thrown once the reason was printed, to end the invocation with `code`.
+  private static final class Exit extends RuntimeException {
+    private final int code;
+
+    private Exit(int code) {
+      super(null, null, false, false);
+      this.code = code;
+    }
+  }
+
+  public int execute(String[] args) {
+    int code;
+    try {
+      code = run(args);
+    } catch (Exit exit) {
+      code = exit.code;
+    } finally {
+      out.flush();
+    }
+
+    stats.finish(err, args.length > 0 ? args[0] : "", code);
+    return code;
+  }
+
+  private int run(String[] args) {
+    if (args.length < 2) {
+      usage();
+    }
+
+    var command = args[0];
+    Map<String, String> options = new HashMap<>();
+    String filepath = null;
+
+    for (var i = 1; i < args.length; i++) {
+      if (args[i].startsWith("--")) {
+        var option = args[i].substring(2).split("=", 2);
+        options.put(option[0], option.length > 1 ? option[1] : "");
+      } else {
+        filepath = args[i];
+      }
+    }
+
+    if (options.containsKey("flush")) {
+      out.setFlushPolicy(flushPolicy(options.get("flush")));
+    }
+
+    if (command.equals("serve")) {
+      return new Server(options, err).serve();
+    }
+
+    if (filepath == null) {
+      usage();
+    }
+
+    if (command.equals("batch")) {
+      return new Batch(options, out, err).run(filepath);
+    }
+
+    if (options.containsKey("stats")) {
+      stats = new Stats(true);
+    }
+
+    var budget = budget(options);
+    var engine = engine(options.getOrDefault("engine", "tree"), budget);
+    var pipeline = pipeline(options);
+    var resolver = new Resolver(errors);
+    var printAst = options.containsKey("print-ast");
+    var parallel = options.containsKey("parallel");
+
+    // Commands that print as a last step start this phase themselves, the others only flush in it.
+    Phase output = null;
+
+    switch (command) {
+      case "tokenize" -> {
+        var tokens = scan(readFile(filepath), parallel);
+
+        output = stats.start("output");
+        tokens.print(out);
+      }
+      case "parse" -> {
+        var expr = parseExpr(scan(readFile(filepath), parallel));
+
+        output = stats.start("output");
+        if (expr != null) {
+          out.println(AstPrinter.getInstance().print(pipeline.optimize(expr)));
+        }
+      }
+      case "evaluate" -> {
+        var expr = parseExpr(scan(readFile(filepath), parallel));
+
+        if (!errors.hasErrors() && expr != null) {
+          interpret("execute", engine, printing(resolver.resolve(pipeline.optimize(List.of(new Stmt.Print(expr)))), printAst));
+        }
+      }
+      case "run" -> {
+        if (options.containsKey("stream")) {
+          runStreaming(filepath, stmts -> engine.interpret(printing(resolver.resolve(pipeline.optimize(stmts)), printAst)));
+        } else if (options.containsKey("cache") || options.containsKey("cache-dir")) {
+          var cache = options.containsKey("cache-dir")
+              ? new AstCache(Path.of(options.get("cache-dir")))
+              : AstCache.nextTo(Path.of(filepath));
+
+          interpret("execute", engine, printing(resolver.resolve(pipeline.optimize(parseCached(filepath, cache, parallel))), printAst));
+        } else {
+          var tokens = scan(readFile(filepath), parallel);
+
+          interpret("execute", engine, printing(resolver.resolve(pipeline.optimize(parse(tokens, parallel))), printAst));
+        }
+      }
+      case "profile" -> {
+        if (!options.getOrDefault("engine", "tree").equals("tree")) {
+          throw exit(64, "The profiler only runs on the tree engine");
+        }
+
+        var profiler = new Profiler(nanos(options, "interval", 1));
+        var top = positive(options, "top", 10);
+        var weight = weight(options.getOrDefault("weight", "samples"));
+        var collapsed = Path.of(options.getOrDefault("out", filepath + ".collapsed"));
+        var tokens = scan(readFile(filepath), parallel);
+
+        var stmts = resolver.resolve(pipeline.optimize(parse(tokens, parallel)));
+
+        interpret("execute", new ProfilingInterpreter(out, errors, budget, profiler), printing(stmts, printAst));
+
+        out.flush();
+        writeProfile(profiler.profile(), collapsed, weight);
+        profiler.profile().printHotLines(err, top);
+        err.println("Stacks written to " + collapsed);
+      }
+      default -> {
+        throw exit(64, "Unknown command: " + command);
+      }
+    }
+
+    if (output == null) {
+      output = stats.start("output");
+    }
+    out.flush();
+    output.end();
+    output.printed(out.written());
+
+    return errors.printErrors(err);
+  }
+
+  // Runs `stmts` as phase `name`, which counts the statements pulled and the bytes they printed.
+  private void interpret(String name, Engine engine, Iterable<Stmt> stmts) {
+    var phase = stats.start(name);
+    var printed = out.written();
+
+    engine.interpret(Stats.counted(stmts, phase));
+
+    phase.end();
+    phase.printed(out.written() - printed);
+  }
+
+  // Scans, parses and executes one top-level statement at a time, so memory is bounded by the largest statement.
+  private void runStreaming(String filepath, Engine engine) {
+    try (var reader = Files.newBufferedReader(Path.of(filepath))) {
+      var parser = new Parser(new Scanner(reader, errors).stream(), errors);
+
+      // Scanning and parsing interleave with execution here, so they are all one phase.
+      interpret("stream", engine, parser.stream());
+      parser.drain();
+    } catch (IOException | UncheckedIOException e) {
+      throw exit(65, "Error reading file: " + e.getMessage());
+    }
+  }
+
+  // Skips the scanner and parser when the cache holds an entry for this exact source; only clean parses are stored.
+  private List<Stmt> parseCached(String filepath, AstCache cache, boolean parallel) {
+    var phase = stats.start("cache");
+    var source = readBytes(filepath);
+    var hash = AstCache.hash(source);
+    var stmts = cache.load(hash);
+    phase.end();
+
+    if (stmts != null) {
+      if (phase.counting()) {
+        phase.statements(stmts.size()).nodes(Stats.nodes(stmts));
+      }
+      return stmts;
+    }
+
+    String content;
+    try {
+      content = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(source)).toString();
+    } catch (CharacterCodingException e) {
+      throw exit(65, "Error reading file: " + e.getMessage());
+    }
+
+    var tokens = scan(content, parallel);
+    stmts = parse(tokens, parallel);
+
+    if (!errors.hasErrors()) {
+      cache.store(hash, stmts);
+    }
+
+    return stmts;
+  }
+
+  private TokenBuffer scan(String source, boolean parallel) {
+    var phase = stats.start("scan");
+    var tokens = parallel ? new ParallelScanner(source, errors).scanCompact() : new Scanner(source, errors).scanCompact();
+    phase.end();
+
+    phase.tokens(tokens.size());
+    return tokens;
+  }
+
+  private List<Stmt> parse(TokenBuffer tokens, boolean parallel) {
+    var phase = stats.start("parse");
+    var stmts = parallel ? new ParallelParser(tokens, errors).parse() : new Parser(tokens.cursor(), errors).parse().getStmts();
+    phase.end();
+
+    if (phase.counting()) {
+      phase.statements(stmts.size()).nodes(Stats.nodes(stmts));
+    }
+    return stmts;
+  }
+
+  private Expr parseExpr(TokenBuffer tokens) {
+    var phase = stats.start("parse");
+    var expr = new Parser(tokens.cursor(), errors).parseExpr();
+    phase.end();
+
+    if (phase.counting() && expr != null) {
+      phase.nodes(Stats.nodes(expr));
+    }
+    return expr;
+  }
+
+  // Under --max-steps the passes must leave the step count alone (see Budget), which dead expression elimination
+  // can't: --optimize runs without it, naming it in --passes is a usage error.
+  private Pipeline pipeline(Map<String, String> options) {
+    var limited = options.containsKey("max-steps");
+    try {
+      if (options.containsKey("passes")) {
+        var names = Arrays.stream(options.get("passes").split(",")).filter(name -> !name.isBlank()).toList();
+        if (limited && names.contains("dce")) {
+          throw exit(64, "Optimization pass dce can't run under --max-steps");
+        }
+        return Pipeline.of(names);
+      }
+
+      if (!options.containsKey("optimize")) {
+        return Pipeline.of(List.of());
+      }
+      return limited ? Pipeline.of(List.of("ungroup", "unary", "fold")) : Pipeline.all();
+    } catch (IllegalArgumentException e) {
+      throw exit(64, e.getMessage());
+    }
+  }
+
+  // Echoes each statement to stderr as the engine pulls it, for --print-ast.
+  private Iterable<Stmt> printing(Iterable<Stmt> stmts, boolean enabled) {
+    if (!enabled) {
+      return stmts;
+    }
+
+    return () -> new Iterator<>() {
+      private final Iterator<Stmt> source = stmts.iterator();
+
+      @Override
+      public boolean hasNext() {
+        return source.hasNext();
+      }
+
+      @Override
+      public Stmt next() {
+        var stmt = source.next();
+        out.flush();
+        err.println(AstPrinter.getInstance().print(stmt));
+        return stmt;
+      }
+    };
+  }
+
+  private Engine engine(String name, Budget budget) {
+    return switch (name) {
+      case "tree" -> new Interpreter(out, errors, budget);
+      case "vm" -> new VM(out, errors, budget);
+      case "nodes" -> new NodeInterpreter(out, errors, budget);
+      case "jvm" -> new JvmEngine(out, errors, budget);
+      default -> {
+        throw exit(64, "Unknown engine: " + name);
+      }
+    };
+  }
+
+  private void writeProfile(Profile profile, Path path, Profile.Weight weight) {
+    try (Writer writer = Files.newBufferedWriter(path)) {
+      profile.writeCollapsed(writer, weight);
+    } catch (IOException e) {
+      throw exit(74, "Error writing profile: " + e.getMessage());
+    }
+  }
+
+  private String readFile(String filepath) {
+    try {
+      return Files.readString(Path.of(filepath));
+    } catch (IOException e) {
+      throw exit(65, "Error reading file: " + e.getMessage());
+    }
+  }
+
+  private byte[] readBytes(String filepath) {
+    try {
+      return Files.readAllBytes(Path.of(filepath));
+    } catch (IOException e) {
+      throw exit(65, "Error reading file: " + e.getMessage());
+    }
+  }
+
+  private OutputSink.FlushPolicy flushPolicy(String name) {
+    return switch (name) {
+      case "buffer" -> OutputSink.FlushPolicy.BUFFER;
+      case "line" -> OutputSink.FlushPolicy.LINE;
+      default -> throw exit(64, "Unknown flush policy: " + name);
+    };
+  }
+
+  private Profile.Weight weight(String name) {
+    return switch (name) {
+      case "samples" -> Profile.Weight.SAMPLES;
+      case "allocated" -> Profile.Weight.ALLOCATED;
+      default -> throw exit(64, "Unknown profile weight: " + name);
+    };
+  }
+
+  // The clock starts now, the time limit covers scanning and parsing too.
+  private Budget budget(Map<String, String> options) {
+    var maxSteps = positive(options, "max-steps", Long.MAX_VALUE);
+    var maxMillis = positive(options, "max-time", Long.MAX_VALUE);
+    var maxStringBytes = positive(options, "max-string-bytes", Long.MAX_VALUE);
+
+    return new Budget(maxSteps, maxMillis > Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : maxMillis * 1_000_000, maxStringBytes);
+  }
+
+  // A positive number of milliseconds, in nanoseconds.
+  private long nanos(Map<String, String> options, String name, long fallback) {
+    try {
+      return Math.multiplyExact(positive(options, name, fallback), 1_000_000L);
+    } catch (ArithmeticException e) {
+      throw exit(64, "Invalid --" + name + ": " + options.get(name));
+    }
+  }
+
+  private long positive(Map<String, String> options, String name, long fallback) {
+    if (!options.containsKey(name)) {
+      return fallback;
+    }
+
+    try {
+      var value = Long.parseLong(options.get(name));
+      if (value > 0) {
+        return value;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+
+    throw exit(64, "Invalid --" + name + ": " + options.get(name));
+  }
+
+  private void usage() {
+    throw exit(64, "Usage: ./your_program.sh <command> [--option[=value]...] <filename>");
+  }
+
+  // Prints the reason after whatever the run already wrote to stdout.
+  private Exit exit(int code, String message) {
+    out.flush();
+    err.println(message);
+    return new Exit(code);
+  }
+}
@@ -0,0 +1,131 @@
+package cli;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code serve} command: runs command lines sent over a Unix domain socket ({@code --socket=<path>}) or a
+ * loopback TCP port ({@code --port=<port>}), each on its own virtual thread with its own {@link Cli}, so requests
+ * after the first skip JVM startup and run on warmed-up code.
+ * <p>
+ * One request per connection. The request is the arguments {@code your_program.sh} would get, each followed by a
+ * NUL byte, then a newline, e.g. {@code printf 'run\0/abs/path/test.lox\0\n' | nc -U lox.sock}. Relative paths
+ * resolve against the server's working directory. The response is a {@code <exit code> <stdout length> <stderr
+ * length>} line followed by the stdout and the stderr bytes, exactly what the command line would have produced.
+ * <p>
+ * Only the commands a {@link Batch} manifest can name are served: a {@code serve} request would bind a socket of the
+ * client's choosing, and {@code profile} writes wherever {@code --out} says. Any other command gets exit code 64
+ * without running.
+ */
+public class Server {
+  private static final int MAX_REQUEST_SIZE = 1 << 16;
+  private static final List<String> COMMANDS = List.of("tokenize", "parse", "evaluate", "run");
+
+  private final Map<String, String> options;
+  private final PrintStream log;
+
+  public Server(Map<String, String> options, PrintStream log) {
+    this.options = options;
+    this.log = log;
+  }
+
+  public int serve() {
+    SocketAddress address;
+    ServerSocketChannel server;
+
+    try {
+      if (options.containsKey("socket")) {
+        var path = Path.of(options.get("socket"));
+        Files.deleteIfExists(path);
+        address = UnixDomainSocketAddress.of(path);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+      } else if (options.containsKey("port")) {
+        address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(options.get("port")));
+        server = ServerSocketChannel.open();
+      } else {
+        log.println("Usage: ./your_program.sh serve --socket=<path> | --port=<port>");
+        return 64;
+      }
+
+      server.bind(address);
+    } catch (IOException | NumberFormatException e) {
+      log.println("Cannot listen: " + e.getMessage());
+      return 74;
+    }
+
+    log.println("Listening on " + address);
+
+    try (server) {
+      while (true) {
+        var client = server.accept();
+        Thread.ofVirtual().name("request").start(() -> handle(client));
+      }
+    } catch (IOException e) {
+      log.println("Stopped listening: " + e.getMessage());
+      return 74;
+    }
+  }
+
+  private void handle(SocketChannel client) {
+    try (client) {
+      var args = readRequest(new BufferedInputStream(Channels.newInputStream(client)));
+      if (args == null) {
+        return;
+      }
+
+      var result = COMMANDS.contains(args[0]) ? Capture.of(args) : refused(args[0]);
+
+      var response = Channels.newOutputStream(client);
+      var header = result.code() + " " + result.stdout().size() + " " + result.stderr().size() + "\n";
+      response.write(header.getBytes(StandardCharsets.US_ASCII));
+      result.stdout().writeTo(response);
+      result.stderr().writeTo(response);
+      response.flush();
+    } catch (IOException e) {
+      log.println("Request failed: " + e.getMessage());
+    }
+  }
+
+  private static Capture refused(String command) {
+    var stderr = new ByteArrayOutputStream();
+    stderr.writeBytes(("Command not served: " + command + "\n").getBytes(System.err.charset()));
+    return new Capture(64, new ByteArrayOutputStream(), stderr);
+  }
+
+  // The NUL-separated arguments up to the newline, null when the client sent no complete request.
+  private static String[] readRequest(InputStream in) throws IOException {
+    var request = new ByteArrayOutputStream();
+
+    int b;
+    while ((b = in.read()) != '\n') {
+      if (b < 0 || request.size() == MAX_REQUEST_SIZE) {
+        return null;
+      }
+
+      request.write(b);
+    }
+
+    var text = request.toString(StandardCharsets.UTF_8);
+    if (text.endsWith("\0")) {
+      text = text.substring(0, text.length() - 1);
+    }
+
+    return text.split("\0", -1);
+  }
+}
@@ -0,0 +1,22 @@
+package errors;
+
+/**
+ * A run went over one of its {@link parser.Budget} limits. It unwinds like a {@link RuntimeError}, so every engine
+ * stops the same way, but has its own exit code and no line: the limit is about the whole run, not one operator.
+ */
+public class BudgetExceeded extends RuntimeError {
+  public BudgetExceeded(String message) {
+    super(message, 0);
+  }
+
+  // EX_TEMPFAIL, the same script may well pass with a larger budget.
+  @Override
+  public int exitCode() {
+    return 75;
+  }
+
+  @Override
+  public String message() {
+    return getMessage();
+  }
+}
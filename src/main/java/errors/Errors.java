@@ -1,27 +1,37 @@
 package errors;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * The errors of one run. Every stage of a run reports into the same instance, so concurrent runs stay apart.
+ */
 public class Errors {
-  private final static List<Error> errors = new ArrayList<>();
+  private final List<Error> errors = new ArrayList<>();
 
-  public static void reportError(Error error) {
+  public void reportError(Error error) {
     errors.add(error);
   }
 
-  public static boolean hasErrors() {
+  public boolean hasErrors() {
     return !errors.isEmpty();
   }
 
-  public static int printErrors() {
-    int exitStatus = 0;
+  public int printErrors(PrintStream err) {
+    // Static errors go first, as if the whole source had been checked before anything ran (streaming runs interleave them).
+    var exitStatus = printErrors(err, false, 0);
+    return printErrors(err, true, exitStatus);
+  }
 
+  private int printErrors(PrintStream err, boolean runtime, int exitStatus) {
     for (Error error : errors) {
-      System.err.println(error.message());
+      if (error instanceof RuntimeError == runtime) {
+        err.println(error.message());
 
-      if (exitStatus == 0) {
-        exitStatus = error.exitCode();
+        if (exitStatus == 0) {
+          exitStatus = error.exitCode();
+        }
       }
     }
 
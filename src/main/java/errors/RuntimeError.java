@@ -3,11 +3,16 @@ package errors;
 import lexer.Token;
 
 public class RuntimeError extends RuntimeException implements Error {
-  private final Token token;
+  private final int line;
 
   public RuntimeError(String message, Token token) {
-    super(message);
-    this.token = token;
+    this(message, token.line());
+  }
+
+  // No stack trace, a Lox error only needs its message and line.
+  public RuntimeError(String message, int line) {
+    super(message, null, false, false);
+    this.line = line;
   }
 
   @Override
@@ -17,6 +22,6 @@ public class RuntimeError extends RuntimeException implements Error {
 
   @Override
   public String message() {
-    return super.getMessage() + "\n" + "[line " + token.line() + "]";
+    return super.getMessage() + "\n" + "[line " + line + "]";
   }
 }
@@ -0,0 +1,14 @@
+package incremental;
+
+/**
+ * Replaces {@code length} chars at {@code offset} with {@code text}.
+ */
+public record Edit(int offset, int length, String text) {
+  public static Edit insert(int offset, String text) {
+    return new Edit(offset, 0, text);
+  }
+
+  public static Edit delete(int offset, int length) {
+    return new Edit(offset, length, "");
+  }
+}
@@ -0,0 +1,63 @@
+package incremental;
+
+import lexer.Token;
+import optimizer.Pass;
+import parser.Expr;
+import parser.Stmt;
+
+/**
+ * Moves the operator, name, keyword and parenthesis tokens of a statement by a number of lines. Statements
+ * without any carry no line and come back unchanged.
+ */
+class LineShift extends Pass {
+  private final int delta;
+
+  LineShift(int delta) {
+    this.delta = delta;
+  }
+
+  @Override
+  public Stmt visitFunctionStmt(Stmt.Function stmt) {
+    var params = stmt.params().stream().map(this::shift).toList();
+    return new Stmt.Function(shift(stmt.name()), params, apply(stmt.body()), stmt.depth(), stmt.slot(), stmt.frameSize());
+  }
+
+  @Override
+  public Stmt visitReturnStmt(Stmt.Return stmt) {
+    return new Stmt.Return(shift(stmt.keyword()), rewrite(stmt.value()));
+  }
+
+  @Override
+  public Stmt visitVarStmt(Stmt.Var stmt) {
+    return new Stmt.Var(shift(stmt.name()), rewrite(stmt.initializer()), stmt.depth(), stmt.slot());
+  }
+
+  @Override
+  public Expr visitAssignExpr(Expr.Assign expr) {
+    return new Expr.Assign(shift(expr.name()), expr.value(), expr.depth(), expr.slot());
+  }
+
+  @Override
+  public Expr visitBinaryExpr(Expr.Binary expr) {
+    return new Expr.Binary(expr.left(), expr.right(), shift(expr.operator()));
+  }
+
+  @Override
+  public Expr visitCallExpr(Expr.Call expr) {
+    return new Expr.Call(expr.callee(), shift(expr.paren()), expr.arguments());
+  }
+
+  @Override
+  public Expr visitUnaryExpr(Expr.Unary expr) {
+    return new Expr.Unary(expr.right(), shift(expr.operator()));
+  }
+
+  @Override
+  public Expr visitVariableExpr(Expr.Variable expr) {
+    return new Expr.Variable(shift(expr.name()), expr.depth(), expr.slot());
+  }
+
+  private Token shift(Token token) {
+    return new Token(token.type(), token.lexeme(), token.literal(), token.line() + delta);
+  }
+}
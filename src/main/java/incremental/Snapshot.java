@@ -0,0 +1,140 @@
+package incremental;
+
+import errors.Errors;
+import lexer.Scanner;
+import lexer.Token;
+import lexer.TokenBuffer;
+import parser.Parser;
+import parser.Stmt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An analyzed source: its tokens and top-level statements, plus the token each statement starts at. Applying an
+ * {@link Edit} re-scans only the damaged tokens and re-parses statements from the first damaged one until a
+ * statement boundary lines up with an old one again, the statements after that are reused as they are. Like
+ * {@link Parser#parse()}, statements stop at the first syntax error and the rest is only checked for errors.
+ * Errors of the re-analyzed part are reported to the snapshot's {@link Errors}, the rest were reported when first
+ * analyzed.
+ * <p>
+ * The tokens of a statement hold lines relative to the statement's first line, which is line 1, so an edit that
+ * adds or removes lines before a statement doesn't change it: {@link #line(int)} moves with the token buffer.
+ * {@link #absolute(int)} gives the statement with the lines of the source, for engines and error messages.
+ */
+public final class Snapshot {
+  private final Errors errors;
+  private final TokenBuffer tokens;
+  private final List<Stmt> stmts;
+  // bounds[i] is the first token of stmts[i], bounds[stmts.size()] where parsing stopped.
+  private final int[] bounds;
+  private final boolean failed;
+
+  private Snapshot(Errors errors, TokenBuffer tokens, List<Stmt> stmts, int[] bounds, boolean failed) {
+    this.errors = errors;
+    this.tokens = tokens;
+    this.stmts = Collections.unmodifiableList(stmts);
+    this.bounds = bounds;
+    this.failed = failed;
+  }
+
+  public static Snapshot of(String source, Errors errors) {
+    var tokens = new Scanner(source, errors).scanCompact();
+    return parse(errors, tokens, new ArrayList<>(), new int[16], null, null);
+  }
+
+  public TokenBuffer tokens() {
+    return tokens;
+  }
+
+  // Lines relative to each statement's first line, see absolute(int).
+  public List<Stmt> stmts() {
+    return stmts;
+  }
+
+  // Line of the source the index-th statement starts on.
+  public int line(int index) {
+    return tokens.line(bounds[index]);
+  }
+
+  public Stmt absolute(int index) {
+    var line = line(index);
+    return line == 1 ? stmts.get(index) : new LineShift(line - 1).apply(stmts.get(index));
+  }
+
+  // True when parsing stopped at a syntax error instead of the end of the source.
+  public boolean failed() {
+    return failed;
+  }
+
+  public Snapshot apply(Edit edit) {
+    var splice = tokens.edit(edit.offset(), edit.length(), edit.text(), errors);
+
+    // Last statement starting at or before the first damaged token, the ones before it can't have changed.
+    var first = Arrays.binarySearch(bounds, 0, stmts.size() + 1, splice.from());
+    if (first < 0) {
+      first = -first - 2;
+    }
+
+    var reused = new ArrayList<>(stmts.subList(0, first));
+    return parse(errors, splice.tokens(), reused, Arrays.copyOf(bounds, bounds.length), this, splice);
+  }
+
+  // Parses on from the statements already in `stmts`; past the splice, reuses `previous` once a boundary lines up.
+  private static Snapshot parse(
+    Errors errors, TokenBuffer tokens, List<Stmt> stmts, int[] bounds, Snapshot previous, TokenBuffer.Splice splice
+  ) {
+    var cursor = tokens.cursor(bounds[stmts.size()]);
+    var parser = new Parser(cursor, errors);
+
+    while (true) {
+      var position = cursor.position();
+      bounds = put(bounds, stmts.size(), position);
+
+      if (splice != null && position >= splice.newTo()) {
+        var shift = splice.newTo() - splice.oldTo();
+        var old = Arrays.binarySearch(previous.bounds, 0, previous.stmts.size() + 1, position - shift);
+
+        // A failed tail is parsed again so its error is reported for this snapshot too.
+        if (old >= 0 && (old < previous.stmts.size() || !previous.failed)) {
+          return previous.reuse(tokens, stmts, bounds, old, shift);
+        }
+      }
+
+      if (cursor.peekType() == Token.Type.EOF) {
+        return new Snapshot(errors, tokens, stmts, bounds, false);
+      }
+
+      var stmt = parser.parseNext();
+      if (stmt == null) {
+        parser.drain();
+        return new Snapshot(errors, tokens, stmts, bounds, true);
+      }
+
+      var line = tokens.line(position);
+      stmts.add(line == 1 ? stmt : new LineShift(1 - line).apply(stmt));
+    }
+  }
+
+  // Appends this snapshot's statements from `from` on to a re-parsed prefix. Their lines are relative, so they are
+  // the same statements wherever the edit moved them.
+  private Snapshot reuse(TokenBuffer tokens, List<Stmt> prefix, int[] bounds, int from, int shift) {
+    for (var i = from; i < stmts.size(); i++) {
+      prefix.add(stmts.get(i));
+      bounds = put(bounds, prefix.size(), this.bounds[i + 1] + shift);
+    }
+
+    return new Snapshot(errors, tokens, prefix, bounds, failed);
+  }
+
+  private static int[] put(int[] bounds, int index, int value) {
+    if (index == bounds.length) {
+      bounds = Arrays.copyOf(bounds, bounds.length * 2);
+    }
+
+    bounds[index] = value;
+    return bounds;
+  }
+}
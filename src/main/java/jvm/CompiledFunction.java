@@ -0,0 +1,35 @@
+package jvm;
+
+import output.OutputSink;
+import parser.Budget;
+import parser.Globals;
+import parser.LoxFunction;
+
+import java.lang.invoke.MethodHandle;
+
+// A function declared in generated code, `body` is its static method in the generated class.
+final class CompiledFunction extends LoxFunction {
+  private final MethodHandle body;
+  private final OutputSink out;
+  private final Budget budget;
+  private final Globals globals;
+
+  CompiledFunction(String name, int arity, int frameSize, Object[] closure, MethodHandle body, OutputSink out, Budget budget, Globals globals) {
+    super(name, arity, frameSize, closure);
+    this.body = body;
+    this.out = out;
+    this.budget = budget;
+    this.globals = globals;
+  }
+
+  @Override
+  public Object call(Object[] frame) {
+    try {
+      return (Object) body.invokeExact(out, budget, globals, frame);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,423 @@
+package jvm;
+
+import lexer.Token;
+import output.OutputSink;
+import parser.Budget;
+import parser.Expr;
+import parser.Globals;
+import parser.Resolver;
+import parser.Stmt;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDescs;
+import java.lang.constant.DirectMethodHandleDesc;
+import java.lang.constant.MethodHandleDesc;
+import java.lang.constant.MethodTypeDesc;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates a class with a {@code static void run(OutputSink, Budget, Globals)} method that executes a list of
+ * statements, charging the budget for each statement before it runs. Block frames are arrays laid out as
+ * {@link Resolver} describes, the innermost one kept in a local. Every function declared in the statements becomes a
+ * static method of its own taking the same three parameters and its call frame, wrapped in a {@link CompiledFunction}
+ * when the declaration runs; returns are plain {@code areturn}s. Subtrees statically known to produce numbers are
+ * computed with primitive double instructions, everything else is boxed and goes through {@link RuntimeSupport}.
+ */
+public class JvmCompiler implements Stmt.Visitor<Void>, Expr.Visitor<JvmCompiler.Kind> {
+  static final ClassDesc PROGRAM = ClassDesc.of("jvm.LoxProgram");
+  static final String RUN = "run";
+  private static final String FUNCTION = "fn$";
+
+  private static final ClassDesc SUPPORT = ClassDesc.of(RuntimeSupport.class.getName());
+  private static final ClassDesc CD_DOUBLE = ClassDesc.of(Double.class.getName());
+  private static final ClassDesc CD_BOOLEAN = ClassDesc.of(Boolean.class.getName());
+  private static final ClassDesc CD_OUTPUT_SINK = ClassDesc.of(OutputSink.class.getName());
+  private static final ClassDesc CD_BUDGET = ClassDesc.of(Budget.class.getName());
+  private static final ClassDesc CD_GLOBALS = ClassDesc.of(Globals.class.getName());
+  private static final ClassDesc CD_FRAME = ConstantDescs.CD_Object.arrayType();
+
+  // Locals of run() and of function methods: the three parameters they share, then the innermost frame, which is
+  // the fourth parameter of a function method.
+  private static final int OUT = 0, BUDGET = 1, GLOBALS = 2, FRAME = 3;
+  private static final MethodTypeDesc FUNCTION_TYPE = MethodTypeDesc.of(ConstantDescs.CD_Object, CD_OUTPUT_SINK, CD_BUDGET, CD_GLOBALS, CD_FRAME);
+
+  private static final MethodTypeDesc ADD = MethodTypeDesc.of(ConstantDescs.CD_Object, ConstantDescs.CD_Object, ConstantDescs.CD_Object, ConstantDescs.CD_int, CD_BUDGET);
+  private static final MethodTypeDesc NUMBER_BINARY = MethodTypeDesc.of(ConstantDescs.CD_double, ConstantDescs.CD_Object, ConstantDescs.CD_Object, ConstantDescs.CD_int);
+  private static final MethodTypeDesc CHECKED_COMPARISON = MethodTypeDesc.of(CD_BOOLEAN, ConstantDescs.CD_Object, ConstantDescs.CD_Object, ConstantDescs.CD_int);
+  private static final MethodTypeDesc DOUBLE_COMPARISON = MethodTypeDesc.of(CD_BOOLEAN, ConstantDescs.CD_double, ConstantDescs.CD_double);
+  private static final MethodTypeDesc OBJECT_COMPARISON = MethodTypeDesc.of(CD_BOOLEAN, ConstantDescs.CD_Object, ConstantDescs.CD_Object);
+
+  enum Kind {
+    NUMBER, OBJECT
+  }
+
+  private final Map<Expr, Kind> kinds = new IdentityHashMap<>();
+  // Function declarations met so far, the method of the i-th is fn$i. Bodies are compiled after run(), nested
+  // declarations found there are appended.
+  private final List<Stmt.Function> functions = new ArrayList<>();
+  private CodeBuilder code;
+
+  public byte[] compile(List<Stmt> stmts) {
+    return ClassFile.of().build(PROGRAM, program -> {
+      program
+        .withFlags(ClassFile.ACC_FINAL | ClassFile.ACC_SYNTHETIC)
+        .withSuperclass(ConstantDescs.CD_Object)
+        .withMethodBody(RUN, MethodTypeDesc.of(ConstantDescs.CD_void, CD_OUTPUT_SINK, CD_BUDGET, CD_GLOBALS), ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC, code -> {
+          this.code = code;
+          code.aconst_null();
+          code.astore(FRAME);
+          stmts.forEach(this::statement);
+          code.return_();
+        });
+
+      for (var i = 0; i < functions.size(); i++) {
+        var function = functions.get(i);
+        program.withMethodBody(FUNCTION + i, FUNCTION_TYPE, ClassFile.ACC_PRIVATE | ClassFile.ACC_STATIC, code -> {
+          this.code = code;
+          function.body().forEach(this::statement);
+          code.aconst_null();
+          code.areturn();
+        });
+      }
+    });
+  }
+
+  @Override
+  public Void visitBlockStmt(Stmt.Block stmt) {
+    if (stmt.frameSize() > 0) {
+      code.ldc(stmt.frameSize());
+      code.anewarray(ConstantDescs.CD_Object);
+      code.dup();
+      code.iconst_0();
+      code.aload(FRAME);
+      code.aastore();
+      code.astore(FRAME);
+    }
+
+    stmt.stmts().forEach(this::statement);
+
+    if (stmt.frameSize() > 0) {
+      loadFrame(1);
+      code.astore(FRAME);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitExpressionStmt(Stmt.Expression stmt) {
+    if (compile(stmt.expr()) == Kind.NUMBER) {
+      code.pop2();
+    } else {
+      code.pop();
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitFunctionStmt(Stmt.Function stmt) {
+    var method = MethodHandleDesc.ofMethod(DirectMethodHandleDesc.Kind.STATIC, PROGRAM, FUNCTION + functions.size(), FUNCTION_TYPE);
+    functions.add(stmt);
+
+    declare(stmt.depth(), stmt.slot(), () -> {
+      code.ldc(stmt.name().lexeme());
+      code.ldc(stmt.params().size());
+      code.ldc(stmt.frameSize());
+      code.aload(FRAME);
+      code.ldc(method);
+      code.aload(OUT);
+      code.aload(BUDGET);
+      code.aload(GLOBALS);
+      code.invokestatic(SUPPORT, "function", MethodTypeDesc.of(ConstantDescs.CD_Object, ConstantDescs.CD_String, ConstantDescs.CD_int, ConstantDescs.CD_int, CD_FRAME, ConstantDescs.CD_MethodHandle, CD_OUTPUT_SINK, CD_BUDGET, CD_GLOBALS));
+    });
+
+    return null;
+  }
+
+  @Override
+  public Void visitIfStmt(Stmt.If stmt) {
+    var elseBranch = code.newLabel();
+    var end = code.newLabel();
+
+    compileBoxed(stmt.condition());
+    code.invokestatic(SUPPORT, "isTruthy", MethodTypeDesc.of(ConstantDescs.CD_boolean, ConstantDescs.CD_Object));
+    code.ifeq(elseBranch);
+    statement(stmt.thenBranch());
+    code.goto_(end);
+    code.labelBinding(elseBranch);
+    if (stmt.elseBranch() != null) {
+      statement(stmt.elseBranch());
+    }
+    code.labelBinding(end);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(Stmt.Print stmt) {
+    // The stream goes below the value.
+    code.aload(OUT);
+    var kind = compile(stmt.expr());
+    var parameter = kind == Kind.NUMBER ? ConstantDescs.CD_double : ConstantDescs.CD_Object;
+    code.invokestatic(SUPPORT, "print", MethodTypeDesc.of(ConstantDescs.CD_void, CD_OUTPUT_SINK, parameter));
+    return null;
+  }
+
+  @Override
+  public Void visitReturnStmt(Stmt.Return stmt) {
+    compileBoxed(stmt.value());
+    code.areturn();
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(Stmt.Var stmt) {
+    declare(stmt.depth(), stmt.slot(), () -> compileBoxed(stmt.initializer()));
+    return null;
+  }
+
+  @Override
+  public Kind visitAssignExpr(Expr.Assign expr) {
+    if (expr.depth() == Resolver.GLOBAL) {
+      code.aload(GLOBALS);
+      code.ldc(expr.slot());
+      compileBoxed(expr.value());
+      code.ldc(expr.name().lexeme());
+      code.ldc(expr.name().line());
+      code.invokevirtual(CD_GLOBALS, "assign", MethodTypeDesc.of(ConstantDescs.CD_Object, ConstantDescs.CD_int, ConstantDescs.CD_Object, ConstantDescs.CD_String, ConstantDescs.CD_int));
+    } else {
+      loadFrame(expr.depth());
+      code.ldc(expr.slot());
+      compileBoxed(expr.value());
+      // Keeps the value as the assignment's result.
+      code.dup_x2();
+      code.aastore();
+    }
+
+    return kindOf(expr);
+  }
+
+  @Override
+  public Kind visitBinaryExpr(Expr.Binary expr) {
+    var type = expr.operator().type();
+    var line = expr.operator().line();
+    var numbers = kindOf(expr.left()) == Kind.NUMBER && kindOf(expr.right()) == Kind.NUMBER;
+
+    if (numbers) {
+      compile(expr.left());
+      compile(expr.right());
+      code.lineNumber(line);
+
+      switch (type) {
+        case Token.Type.PLUS -> code.dadd();
+        case Token.Type.MINUS -> code.dsub();
+        case Token.Type.STAR -> code.dmul();
+        case Token.Type.SLASH -> code.ddiv();
+        case Token.Type.GREATER -> code.invokestatic(SUPPORT, "greater", DOUBLE_COMPARISON);
+        case Token.Type.GREATER_EQUAL -> code.invokestatic(SUPPORT, "greaterEqual", DOUBLE_COMPARISON);
+        case Token.Type.LESS -> code.invokestatic(SUPPORT, "less", DOUBLE_COMPARISON);
+        case Token.Type.LESS_EQUAL -> code.invokestatic(SUPPORT, "lessEqual", DOUBLE_COMPARISON);
+        case Token.Type.EQUAL_EQUAL -> code.invokestatic(SUPPORT, "equal", DOUBLE_COMPARISON);
+        case Token.Type.BANG_EQUAL -> code.invokestatic(SUPPORT, "notEqual", DOUBLE_COMPARISON);
+        default -> {
+          // and/or only look at truthiness, numbers are always truthy.
+          code.pop2();
+          code.pop2();
+          code.getstatic(CD_BOOLEAN, "TRUE", CD_BOOLEAN);
+        }
+      }
+
+      return kindOf(expr);
+    }
+
+    compileBoxed(expr.left());
+    compileBoxed(expr.right());
+    code.lineNumber(line);
+    code.ldc(line);
+
+    switch (type) {
+      case Token.Type.PLUS -> {
+        code.aload(BUDGET);
+        code.invokestatic(SUPPORT, "add", ADD);
+      }
+      case Token.Type.MINUS -> code.invokestatic(SUPPORT, "subtract", NUMBER_BINARY);
+      case Token.Type.STAR -> code.invokestatic(SUPPORT, "multiply", NUMBER_BINARY);
+      case Token.Type.SLASH -> code.invokestatic(SUPPORT, "divide", NUMBER_BINARY);
+      case Token.Type.GREATER -> code.invokestatic(SUPPORT, "greater", CHECKED_COMPARISON);
+      case Token.Type.GREATER_EQUAL -> code.invokestatic(SUPPORT, "greaterEqual", CHECKED_COMPARISON);
+      case Token.Type.LESS -> code.invokestatic(SUPPORT, "less", CHECKED_COMPARISON);
+      case Token.Type.LESS_EQUAL -> code.invokestatic(SUPPORT, "lessEqual", CHECKED_COMPARISON);
+      default -> {
+        code.pop();
+        var name = switch (type) {
+          case Token.Type.EQUAL_EQUAL -> "equal";
+          case Token.Type.BANG_EQUAL -> "notEqual";
+          case Token.Type.AND -> "and";
+          case Token.Type.OR -> "or";
+          default -> throw new IllegalStateException("Unexpected binary operator: " + type);
+        };
+        code.invokestatic(SUPPORT, name, OBJECT_COMPARISON);
+      }
+    }
+
+    return kindOf(expr);
+  }
+
+  @Override
+  public Kind visitCallExpr(Expr.Call expr) {
+    var count = expr.arguments().size();
+    var line = expr.paren().line();
+
+    // The arguments are stored straight into the frame the callee gets, see RuntimeSupport.frame.
+    compileBoxed(expr.callee());
+    code.dup();
+    code.ldc(count);
+    code.invokestatic(SUPPORT, "frame", MethodTypeDesc.of(CD_FRAME, ConstantDescs.CD_Object, ConstantDescs.CD_int));
+
+    for (var i = 0; i < count; i++) {
+      code.dup();
+      code.ldc(i + 1);
+      compileBoxed(expr.arguments().get(i));
+      code.aastore();
+    }
+
+    code.lineNumber(line);
+    code.ldc(count);
+    code.ldc(line);
+    code.invokestatic(SUPPORT, "call", MethodTypeDesc.of(ConstantDescs.CD_Object, ConstantDescs.CD_Object, CD_FRAME, ConstantDescs.CD_int, ConstantDescs.CD_int));
+    return kindOf(expr);
+  }
+
+  @Override
+  public Kind visitGroupingExpr(Expr.Grouping expr) {
+    return compile(expr.expr());
+  }
+
+  @Override
+  public Kind visitLiteralExpr(Expr.Literal expr) {
+    switch (expr.literal()) {
+      case null -> code.aconst_null();
+      case Boolean value -> code.getstatic(CD_BOOLEAN, value ? "TRUE" : "FALSE", CD_BOOLEAN);
+      case Double value -> code.ldc(value);
+      case String value -> code.ldc(value);
+      default -> throw new IllegalStateException("Unexpected literal: " + expr.literal());
+    }
+
+    return kindOf(expr);
+  }
+
+  @Override
+  public Kind visitUnaryExpr(Expr.Unary expr) {
+    var line = expr.operator().line();
+
+    if (expr.operator().type() == Token.Type.MINUS && kindOf(expr.right()) == Kind.NUMBER) {
+      compile(expr.right());
+      code.dneg();
+      return Kind.NUMBER;
+    }
+
+    compileBoxed(expr.right());
+    code.lineNumber(line);
+
+    switch (expr.operator().type()) {
+      case Token.Type.MINUS -> {
+        code.ldc(line);
+        code.invokestatic(SUPPORT, "negate", MethodTypeDesc.of(ConstantDescs.CD_double, ConstantDescs.CD_Object, ConstantDescs.CD_int));
+      }
+      case Token.Type.BANG -> code.invokestatic(SUPPORT, "not", MethodTypeDesc.of(CD_BOOLEAN, ConstantDescs.CD_Object));
+      default -> throw new IllegalStateException("Unexpected unary operator: " + expr.operator().type());
+    }
+
+    return kindOf(expr);
+  }
+
+  @Override
+  public Kind visitVariableExpr(Expr.Variable expr) {
+    if (expr.depth() == Resolver.GLOBAL) {
+      code.aload(GLOBALS);
+      code.ldc(expr.slot());
+      code.ldc(expr.name().lexeme());
+      code.ldc(expr.name().line());
+      code.invokevirtual(CD_GLOBALS, "get", MethodTypeDesc.of(ConstantDescs.CD_Object, ConstantDescs.CD_int, ConstantDescs.CD_String, ConstantDescs.CD_int));
+    } else {
+      loadFrame(expr.depth());
+      code.ldc(expr.slot());
+      code.aaload();
+    }
+
+    return kindOf(expr);
+  }
+
+  private void statement(Stmt stmt) {
+    code.aload(BUDGET);
+    code.ldc(Budget.steps(stmt));
+    code.invokevirtual(CD_BUDGET, "charge", MethodTypeDesc.of(ConstantDescs.CD_void, ConstantDescs.CD_long));
+    stmt.accept(this);
+  }
+
+  // Stores the boxed value `value` pushes in a newly declared variable.
+  private void declare(int depth, int slot, Runnable value) {
+    if (depth == Resolver.GLOBAL) {
+      code.aload(GLOBALS);
+      code.ldc(slot);
+      value.run();
+      code.invokevirtual(CD_GLOBALS, "define", MethodTypeDesc.of(ConstantDescs.CD_void, ConstantDescs.CD_int, ConstantDescs.CD_Object));
+    } else {
+      loadFrame(0);
+      code.ldc(slot);
+      value.run();
+      code.aastore();
+    }
+  }
+
+  // Pushes the frame `depth` links out from the innermost one.
+  private void loadFrame(int depth) {
+    code.aload(FRAME);
+    for (var i = 0; i < depth; i++) {
+      code.iconst_0();
+      code.aaload();
+      code.checkcast(CD_FRAME);
+    }
+  }
+
+  private Kind compile(Expr expr) {
+    return expr.accept(this);
+  }
+
+  private void compileBoxed(Expr expr) {
+    if (compile(expr) == Kind.NUMBER) {
+      code.invokestatic(CD_DOUBLE, "valueOf", MethodTypeDesc.of(CD_DOUBLE, ConstantDescs.CD_double));
+    }
+  }
+
+  // What the compiled code leaves on the operand stack: arithmetic always ends in a double, and so does + when
+  // both sides are numbers, everything else is a reference.
+  private Kind kindOf(Expr expr) {
+    var kind = kinds.get(expr);
+    if (kind != null) {
+      return kind;
+    }
+
+    kind = switch (expr) {
+      case Expr.Variable variable -> Kind.OBJECT;
+      case Expr.Assign assign -> Kind.OBJECT;
+      case Expr.Call call -> Kind.OBJECT;
+      case Expr.Literal literal -> literal.literal() instanceof Double ? Kind.NUMBER : Kind.OBJECT;
+      case Expr.Grouping grouping -> kindOf(grouping.expr());
+      case Expr.Unary unary -> unary.operator().type() == Token.Type.MINUS ? Kind.NUMBER : Kind.OBJECT;
+      case Expr.Binary binary -> switch (binary.operator().type()) {
+        case Token.Type.MINUS, Token.Type.STAR, Token.Type.SLASH -> Kind.NUMBER;
+        case Token.Type.PLUS -> kindOf(binary.left()) == Kind.NUMBER && kindOf(binary.right()) == Kind.NUMBER ? Kind.NUMBER : Kind.OBJECT;
+        default -> Kind.OBJECT;
+      };
+    };
+
+    kinds.put(expr, kind);
+    return kind;
+  }
+}
@@ -0,0 +1,87 @@
+package jvm;
+
+import errors.Errors;
+import errors.RuntimeError;
+import output.OutputSink;
+import parser.Budget;
+import parser.Engine;
+import parser.Globals;
+import parser.Interpreter;
+import parser.Stmt;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs statements as generated JVM bytecode. Statements are compiled in batches, each batch becomes a hidden
+ * class whose {@code run} method the JIT can compile like any other Java code. Batches share the globals, and the
+ * tree walker that runs a batch too big to compile shares them as well.
+ */
+public class JvmEngine implements Engine {
+  private static final int BATCH_SIZE = 256;
+
+  private final OutputSink out;
+  private final Errors errors;
+  private final Budget budget;
+  private final Globals globals = new Globals();
+  private final Interpreter fallback;
+
+  public JvmEngine(OutputSink out, Errors errors) {
+    this(out, errors, Budget.unlimited());
+  }
+
+  public JvmEngine(OutputSink out, Errors errors, Budget budget) {
+    this.out = out;
+    this.errors = errors;
+    this.budget = budget;
+    this.fallback = new Interpreter(out, errors, budget, globals);
+  }
+
+  @Override
+  public void interpret(Iterable<Stmt> stmts) {
+    try {
+      var batch = new ArrayList<Stmt>(BATCH_SIZE);
+
+      for (var stmt : stmts) {
+        batch.add(stmt);
+
+        if (batch.size() == BATCH_SIZE) {
+          run(batch);
+          batch.clear();
+        }
+      }
+
+      run(batch);
+    } catch (RuntimeError error) {
+      errors.reportError(error);
+    }
+  }
+
+  private void run(List<Stmt> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    MethodHandle program;
+    try {
+      var lookup = MethodHandles.lookup().defineHiddenClass(new JvmCompiler().compile(batch), true);
+      program = lookup.findStatic(lookup.lookupClass(), JvmCompiler.RUN, MethodType.methodType(void.class, OutputSink.class, Budget.class, Globals.class));
+    } catch (RuntimeException | LinkageError | ReflectiveOperationException e) {
+      // The batch doesn't fit the class file format (e.g. a method over 64KB), the tree walker has no such limit. A
+      // class the JVM rejects (a VerifyError or ClassFormatError from a codegen bug) runs on the tree walker too.
+      batch.forEach(fallback::execute);
+      return;
+    }
+
+    try {
+      program.invokeExact(out, budget, globals);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package jvm;
+
+import errors.RuntimeError;
+import output.OutputSink;
+import parser.Budget;
+import parser.Globals;
+import parser.LoxFunction;
+import parser.Values;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Static entry points called by generated classes. Operations that can fail take the operator's line so the
+ * {@link RuntimeError} reads exactly like the tree walker's.
+ */
+public final class RuntimeSupport {
+  private RuntimeSupport() {}
+
+  public static Object add(Object left, Object right, int line, Budget budget) {
+    if (left instanceof Double d1 && right instanceof Double d2) {
+      return d1 + d2;
+    }
+
+    if (left instanceof CharSequence s1 && right instanceof CharSequence s2) {
+      return budget.concat(s1, s2);
+    }
+
+    throw new RuntimeError(Values.OPERANDS_MUST_BE_NUMBERS_OR_STRINGS, line);
+  }
+
+  public static double subtract(Object left, Object right, int line) {
+    return number(left, right, line) - (double) right;
+  }
+
+  public static double multiply(Object left, Object right, int line) {
+    return number(left, right, line) * (double) right;
+  }
+
+  public static double divide(Object left, Object right, int line) {
+    return number(left, right, line) / (double) right;
+  }
+
+  public static Boolean greater(Object left, Object right, int line) {
+    return number(left, right, line) > (double) right;
+  }
+
+  public static Boolean greaterEqual(Object left, Object right, int line) {
+    return number(left, right, line) >= (double) right;
+  }
+
+  public static Boolean less(Object left, Object right, int line) {
+    return number(left, right, line) < (double) right;
+  }
+
+  public static Boolean lessEqual(Object left, Object right, int line) {
+    return number(left, right, line) <= (double) right;
+  }
+
+  public static Boolean greater(double left, double right) {
+    return left > right;
+  }
+
+  public static Boolean greaterEqual(double left, double right) {
+    return left >= right;
+  }
+
+  public static Boolean less(double left, double right) {
+    return left < right;
+  }
+
+  public static Boolean lessEqual(double left, double right) {
+    return left <= right;
+  }
+
+  public static Boolean equal(Object left, Object right) {
+    return Values.isEqual(left, right);
+  }
+
+  public static Boolean notEqual(Object left, Object right) {
+    return !Values.isEqual(left, right);
+  }
+
+  public static Boolean equal(double left, double right) {
+    return Values.isEqual(left, right);
+  }
+
+  public static Boolean notEqual(double left, double right) {
+    return !Values.isEqual(left, right);
+  }
+
+  public static Boolean and(Object left, Object right) {
+    return Values.isTruthy(left) && Values.isTruthy(right);
+  }
+
+  public static Boolean or(Object left, Object right) {
+    return Values.isTruthy(left) || Values.isTruthy(right);
+  }
+
+  public static double negate(Object value, int line) {
+    if (!(value instanceof Double number)) {
+      throw new RuntimeError(Values.OPERAND_MUST_BE_NUMBER, line);
+    }
+
+    return -number;
+  }
+
+  public static Boolean not(Object value) {
+    return !Values.isTruthy(value);
+  }
+
+  public static boolean isTruthy(Object value) {
+    return Values.isTruthy(value);
+  }
+
+  public static Object function(String name, int arity, int frameSize, Object[] closure, MethodHandle body, OutputSink out, Budget budget, Globals globals) {
+    return new CompiledFunction(name, arity, frameSize, closure, body, out, budget, globals);
+  }
+
+  // The frame a call's arguments are stored into. When the callee can't take them it is a scratch array, the
+  // arguments are still evaluated before call() reports that.
+  public static Object[] frame(Object callee, int count) {
+    if (callee instanceof LoxFunction function && function.arity() == count) {
+      return function.frame();
+    }
+
+    return new Object[count + 1];
+  }
+
+  public static Object call(Object callee, Object[] frame, int count, int line) {
+    if (!(callee instanceof LoxFunction function) || function.arity() != count) {
+      throw LoxFunction.callError(callee, count, line);
+    }
+
+    return function.call(frame, line);
+  }
+
+  public static void print(OutputSink out, Object value) {
+    Values.println(out, value);
+  }
+
+  public static void print(OutputSink out, double value) {
+    Values.println(out, value);
+  }
+
+  // Returns the left operand once both are known to be numbers.
+  private static double number(Object left, Object right, int line) {
+    if (!(left instanceof Double number) || !(right instanceof Double)) {
+      throw new RuntimeError(Values.OPERANDS_MUST_BE_NUMBERS, line);
+    }
+
+    return number;
+  }
+}
@@ -0,0 +1,17 @@
+package lexer;
+
+import errors.Errors;
+import errors.StaticError;
+
+/**
+ * A lexical error found at {@code offset}, kept apart from {@link Errors} until its line is known for sure.
+ */
+record LexicalError(int offset, int line, String message) {
+  LexicalError moved(int lineDelta) {
+    return new LexicalError(offset, line + lineDelta, message);
+  }
+
+  void report(Errors errors) {
+    errors.reportError(new StaticError("[line " + line + "] Error: " + message));
+  }
+}
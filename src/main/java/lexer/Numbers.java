@@ -0,0 +1,52 @@
+package lexer;
+
+/**
+ * Converts number lexemes straight from the source chars. When the digits fit in a double's 53 bit mantissa and
+ * there are at most 22 of them after the point, both the digits and the power of ten are exact doubles and one
+ * division rounds correctly (Clinger's fast path). Anything else goes through {@link Double#parseDouble}.
+ */
+final class Numbers {
+  private static final long MAX_EXACT = 1L << 53;
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private Numbers() {}
+
+  static double parse(char[] chars, int from, int to) {
+    var mantissa = 0L;
+    var scale = 0;
+    var fraction = false;
+
+    for (var i = from; i < to; i++) {
+      var c = chars[i];
+
+      if (c == '.') {
+        fraction = true;
+        continue;
+      }
+
+      // Other Unicode digits are part of the lexeme too, parseDouble decides what they mean.
+      if (c < '0' || c > '9') {
+        return Double.parseDouble(new String(chars, from, to - from));
+      }
+
+      mantissa = mantissa * 10 + (c - '0');
+
+      if (mantissa > MAX_EXACT) {
+        return Double.parseDouble(new String(chars, from, to - from));
+      }
+
+      if (fraction) {
+        scale++;
+      }
+    }
+
+    if (scale >= POWERS_OF_TEN.length) {
+      return Double.parseDouble(new String(chars, from, to - from));
+    }
+
+    return mantissa / POWERS_OF_TEN[scale];
+  }
+}
@@ -0,0 +1,130 @@
+package lexer;
+
+import errors.Errors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Scans a source in chunks on a {@link ForkJoinPool} into the same {@link TokenBuffer} and errors as
+ * {@link Scanner#scanCompact()}. Chunks start right after a newline, so never inside a {@code //} comment, but they
+ * may start inside a multi-line string. Each chunk is scanned as if it started at a token boundary on line 0, with
+ * its errors held back. The chunks are then merged in order. A chunk is taken as is when the scan before it stops
+ * exactly at its start. Otherwise it is re-scanned from where that scan stopped, until a token starts where the
+ * speculative scan had one, and the rest is taken with its lines moved.
+ */
+public class ParallelScanner {
+  private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+  private final char[] source;
+  private final Errors errors;
+  private final int chunkSize;
+
+  public ParallelScanner(String source, Errors errors) {
+    this(source, errors, Math.max(MIN_CHUNK_SIZE, source.length() / (4 * ForkJoinPool.getCommonPoolParallelism())));
+  }
+
+  public ParallelScanner(String source, Errors errors, int chunkSize) {
+    this.source = source.toCharArray();
+    this.errors = errors;
+    this.chunkSize = chunkSize;
+  }
+
+  private record Chunk(int start, int end, TokenBuffer tokens, List<LexicalError> errors, int exit, int exitLine) {
+  }
+
+  public TokenBuffer scanCompact() {
+    var tasks = new ArrayList<ForkJoinTask<Chunk>>();
+
+    for (var start = 0; start < source.length; ) {
+      var end = chunkEnd(start);
+      var chunkStart = start;
+      tasks.add(ForkJoinPool.commonPool().submit(() -> scanChunk(chunkStart, end)));
+      start = end;
+    }
+
+    var tokens = new TokenBuffer(source, Math.max(16, source.length / 4));
+    var found = new ArrayList<LexicalError>();
+    var position = 0;
+    var line = 1;
+
+    for (var task : tasks) {
+      var chunk = task.join();
+
+      if (position >= chunk.end()) {
+        continue;
+      }
+
+      if (position == chunk.start()) {
+        tokens.copy(chunk.tokens(), 0, chunk.tokens().size(), 0, line);
+
+        for (var error : chunk.errors()) {
+          found.add(error.moved(line));
+        }
+
+        position = chunk.exit();
+        line += chunk.exitLine();
+        continue;
+      }
+
+      // The previous chunk's last token, a string, ran into this one: rescan until it lines up again.
+      var scanner = new Scanner(source, position, line, found::add);
+      position = -1;
+
+      while (scanner.scanInto(tokens, chunk.end())) {
+        var last = tokens.size() - 1;
+        var speculative = chunk.tokens().find(tokens.start(last));
+
+        if (speculative >= 0) {
+          var lineDelta = tokens.line(last) - chunk.tokens().line(speculative);
+          tokens.copy(chunk.tokens(), speculative + 1, chunk.tokens().size(), 0, lineDelta);
+
+          for (var error : chunk.errors()) {
+            if (error.offset() > tokens.start(last)) {
+              found.add(error.moved(lineDelta));
+            }
+          }
+
+          position = chunk.exit();
+          line = chunk.exitLine() + lineDelta;
+          break;
+        }
+      }
+
+      if (position < 0) {
+        position = scanner.position();
+        line = scanner.line();
+      }
+    }
+
+    tokens.add(Token.Type.EOF, source.length, source.length, line, 0);
+    found.forEach(error -> error.report(errors));
+
+    return tokens;
+  }
+
+  // Ends the chunk starting at `start` right after the first newline past the chunk size.
+  private int chunkEnd(int start) {
+    for (var i = start + chunkSize - 1; i < source.length; i++) {
+      if (source[i] == '\n') {
+        return i + 1;
+      }
+    }
+
+    return source.length;
+  }
+
+  private Chunk scanChunk(int start, int end) {
+    var tokens = new TokenBuffer(source, Math.max(16, (end - start) / 4));
+    var errors = new ArrayList<LexicalError>();
+    var scanner = new Scanner(source, start, 0, errors::add);
+
+    while (scanner.scanInto(tokens, end)) {
+      // Tokens starting in this chunk only.
+    }
+
+    return new Chunk(start, end, tokens, errors, scanner.position(), scanner.line());
+  }
+}
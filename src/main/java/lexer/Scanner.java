@@ -1,46 +1,59 @@
 package lexer;
 
-
 import errors.Errors;
-import errors.StaticError;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 
 
 public class Scanner {
-  private final String source;
+  private static final int CHUNK_SIZE = 8192;
+
+  // Source window: in streaming mode only the chars from the current token onwards are kept.
+  private final Reader reader;
+  private char[] buffer;
+  private int limit;
+  private boolean drained;
+
   private int start, current;
   private int line = 1;
-  private static final Map<String, Token.Type> keywords = new HashMap<>();
-
-  static {
-    keywords.put("and", Token.Type.AND);
-    keywords.put("class", Token.Type.CLASS);
-    keywords.put("else", Token.Type.ELSE);
-    keywords.put("false", Token.Type.FALSE);
-    keywords.put("for", Token.Type.FOR);
-    keywords.put("fun", Token.Type.FUN);
-    keywords.put("if", Token.Type.IF);
-    keywords.put("nil", Token.Type.NIL);
-    keywords.put("or", Token.Type.OR);
-    keywords.put("print", Token.Type.PRINT);
-    keywords.put("return", Token.Type.RETURN);
-    keywords.put("super", Token.Type.SUPER);
-    keywords.put("this", Token.Type.THIS);
-    keywords.put("true", Token.Type.TRUE);
-    keywords.put("var", Token.Type.VAR);
-    keywords.put("while", Token.Type.WHILE);
-  }
+  private double number;
 
   private final List<Token> tokens = new ArrayList<>();
+  private final Consumer<LexicalError> errors;
 
   private boolean alreadyScanned = false;
 
-  public Scanner(String source) {
-    this.source = source;
+  public Scanner(String source, Errors errors) {
+    this.reader = null;
+    this.buffer = source.toCharArray();
+    this.limit = buffer.length;
+    this.errors = error -> error.report(errors);
+  }
+
+  // Resumes scanning `source` at a token boundary, handing lexical errors to `errors` as they are found.
+  Scanner(char[] source, int offset, int line, Consumer<LexicalError> errors) {
+    this.reader = null;
+    this.errors = errors;
+    this.buffer = source;
+    this.limit = source.length;
+    this.start = offset;
+    this.current = offset;
+    this.line = line;
+  }
+
+  /**
+   * Creates a scanner that pulls the source from {@code reader} in chunks, see {@link #stream()}.
+   */
+  public Scanner(Reader reader, Errors errors) {
+    this.reader = reader;
+    this.buffer = new char[CHUNK_SIZE];
+    this.errors = error -> error.report(errors);
   }
 
   public Scanner scan() {
@@ -48,63 +61,222 @@ public class Scanner {
       throw new IllegalStateException("An instance of Scanner can only be used to scan once.");
     }
 
+    Token token;
+    do {
+      token = nextToken();
+      tokens.add(token);
+    } while (token.type() != Token.Type.EOF);
+    this.alreadyScanned = true;
+
+    return this;
+  }
+
+  /**
+   * Scans the whole source into a compact {@link TokenBuffer} instead of one {@link Token} per token.
+   */
+  public TokenBuffer scanCompact() {
+    if (this.alreadyScanned) {
+      throw new IllegalStateException("An instance of Scanner can only be used to scan once.");
+    }
+
+    if (reader != null) {
+      throw new IllegalStateException("A streaming Scanner cannot scan into a TokenBuffer.");
+    }
+
+    var tokens = new TokenBuffer(buffer, Math.max(16, limit / 4));
+
+    while (scanInto(tokens)) {
+      // Keep scanning until the EOF token was added.
+    }
+    this.alreadyScanned = true;
+
+    return tokens;
+  }
+
+  // Adds the next token to `tokens`, returns false once that token is EOF.
+  boolean scanInto(TokenBuffer tokens) {
+    if (scanInto(tokens, Integer.MAX_VALUE)) {
+      return true;
+    }
+
+    tokens.add(Token.Type.EOF, current, current, line, 0);
+    return false;
+  }
+
+  // Adds the next token if it starts before `end`, the token itself may run past it.
+  boolean scanInto(TokenBuffer tokens, int end) {
+    while (current < end && !atEOF()) {
+      start = current;
+      var type = scanToken();
+
+      if (type != null) {
+        tokens.add(type, start, current, line, number);
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  int position() {
+    return current;
+  }
+
+  int line() {
+    return line;
+  }
+
+  public Token nextToken() {
     while (!atEOF()) {
       start = current;
-      scanToken();
+      var type = scanToken();
+
+      if (type != null) {
+        return token(type);
+      }
     }
 
-    tokens.add(new Token(Token.Type.EOF, "", null, line));
-    this.alreadyScanned = true;
+    return new Token(Token.Type.EOF, "", null, line);
+  }
 
-    return this;
+  /**
+   * Exposes this scanner as a pull-based {@link TokenStream} that scans one token ahead of the consumer.
+   */
+  public TokenStream stream() {
+    return new TokenStream() {
+      private Token lookahead;
+
+      @Override
+      public Token peek() {
+        if (lookahead == null) {
+          lookahead = nextToken();
+        }
+
+        return lookahead;
+      }
+
+      @Override
+      public Token poll() {
+        var token = peek();
+        lookahead = null;
+        return token;
+      }
+    };
   }
 
-  private void scanToken() {
-    switch (poll()) {
-      case '(' -> addToken(Token.Type.LEFT_PAREN);
-      case ')' -> addToken(Token.Type.RIGHT_PAREN);
-      case '{' -> addToken(Token.Type.LEFT_BRACE);
-      case '}' -> addToken(Token.Type.RIGHT_BRACE);
-      case ',' -> addToken(Token.Type.COMMA);
-      case '.' -> addToken(Token.Type.DOT);
-      case '-' -> addToken(Token.Type.MINUS);
-      case '+' -> addToken(Token.Type.PLUS);
-      case ';' -> addToken(Token.Type.SEMICOLON);
-      case '*' -> addToken(Token.Type.STAR);
+  // Scans the token starting at `start`, returns its type or null when no token was produced.
+  private Token.Type scanToken() {
+    var symbol = poll();
+
+    // Constant labels only: a pattern label would make this a bootstrapped type switch, set up on the first token
+    // of every run.
+    return switch (symbol) {
+      case '(' -> Token.Type.LEFT_PAREN;
+      case ')' -> Token.Type.RIGHT_PAREN;
+      case '{' -> Token.Type.LEFT_BRACE;
+      case '}' -> Token.Type.RIGHT_BRACE;
+      case ',' -> Token.Type.COMMA;
+      case '.' -> Token.Type.DOT;
+      case '-' -> Token.Type.MINUS;
+      case '+' -> Token.Type.PLUS;
+      case ';' -> Token.Type.SEMICOLON;
+      case '*' -> Token.Type.STAR;
       case '/' -> {
         if (match('/')) {
           while (!atEOF() && peek() != '\n') {
             poll();
           }
-        } else {
-          addToken(Token.Type.SLASH);
+          yield null;
         }
+
+        yield Token.Type.SLASH;
       }
-      case '!' -> addToken(match('=') ? Token.Type.BANG_EQUAL : Token.Type.BANG);
-      case '=' -> addToken(match('=') ? Token.Type.EQUAL_EQUAL : Token.Type.EQUAL);
-      case '<' -> addToken(match('=') ? Token.Type.LESS_EQUAL : Token.Type.LESS);
-      case '>' -> addToken(match('=') ? Token.Type.GREATER_EQUAL : Token.Type.GREATER);
+      case '!' -> match('=') ? Token.Type.BANG_EQUAL : Token.Type.BANG;
+      case '=' -> match('=') ? Token.Type.EQUAL_EQUAL : Token.Type.EQUAL;
+      case '<' -> match('=') ? Token.Type.LESS_EQUAL : Token.Type.LESS;
+      case '>' -> match('=') ? Token.Type.GREATER_EQUAL : Token.Type.GREATER;
       case '"' -> parseString();
       case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> parseNumber();
-      case '\n' -> line++;
-      case ' ', '\t', '\r' -> {}
-      case char symbol when Character.isAlphabetic(symbol) || symbol == '_' -> parseIdentifier();
-      case char symbol -> Errors.reportError(new StaticError(String.format("[line %d] Error: Unexpected character: %s", line, symbol)));
-    }
+      case '\n' -> {
+        line++;
+        yield null;
+      }
+      case ' ', '\t', '\r' -> null;
+      default -> {
+        if (Character.isAlphabetic(symbol) || symbol == '_') {
+          yield parseIdentifier();
+        }
+
+        error("Unexpected character: " + symbol);
+        yield null;
+      }
+    };
   }
 
-  private void parseIdentifier() {
+  private Token.Type parseIdentifier() {
     while (Character.isAlphabetic(peek()) || Character.isDigit(peek()) || peek() == '_') {
       poll();
     }
 
-    var lexeme = source.substring(start, current);
-    var type = keywords.getOrDefault(lexeme, Token.Type.IDENTIFIER);
+    return identifierType();
+  }
+
+  // Keyword lookup straight on the source chars, so identifiers don't need a String to be classified.
+  private Token.Type identifierType() {
+    return switch (buffer[start]) {
+      case 'a' -> keyword(1, "nd", Token.Type.AND);
+      case 'c' -> keyword(1, "lass", Token.Type.CLASS);
+      case 'e' -> keyword(1, "lse", Token.Type.ELSE);
+      case 'f' -> {
+        if (current - start < 2) {
+          yield Token.Type.IDENTIFIER;
+        }
+
+        yield switch (buffer[start + 1]) {
+          case 'a' -> keyword(2, "lse", Token.Type.FALSE);
+          case 'o' -> keyword(2, "r", Token.Type.FOR);
+          case 'u' -> keyword(2, "n", Token.Type.FUN);
+          default -> Token.Type.IDENTIFIER;
+        };
+      }
+      case 'i' -> keyword(1, "f", Token.Type.IF);
+      case 'n' -> keyword(1, "il", Token.Type.NIL);
+      case 'o' -> keyword(1, "r", Token.Type.OR);
+      case 'p' -> keyword(1, "rint", Token.Type.PRINT);
+      case 'r' -> keyword(1, "eturn", Token.Type.RETURN);
+      case 's' -> keyword(1, "uper", Token.Type.SUPER);
+      case 't' -> {
+        if (current - start < 2) {
+          yield Token.Type.IDENTIFIER;
+        }
+
+        yield switch (buffer[start + 1]) {
+          case 'h' -> keyword(2, "is", Token.Type.THIS);
+          case 'r' -> keyword(2, "ue", Token.Type.TRUE);
+          default -> Token.Type.IDENTIFIER;
+        };
+      }
+      case 'v' -> keyword(1, "ar", Token.Type.VAR);
+      case 'w' -> keyword(1, "hile", Token.Type.WHILE);
+      default -> Token.Type.IDENTIFIER;
+    };
+  }
+
+  private Token.Type keyword(int offset, String rest, Token.Type type) {
+    if (current - start != offset + rest.length()) {
+      return Token.Type.IDENTIFIER;
+    }
+
+    for (var i = 0; i < rest.length(); i++) {
+      if (buffer[start + offset + i] != rest.charAt(i)) {
+        return Token.Type.IDENTIFIER;
+      }
+    }
 
-    this.tokens.add(new Token(type, lexeme, null, line));
+    return type;
   }
 
-  private void parseNumber() {
+  private Token.Type parseNumber() {
     while (Character.isDigit(peek())) {
       poll();
     }
@@ -115,11 +287,11 @@ public class Scanner {
       } while (Character.isDigit(peek()));
     }
 
-    var literal = Double.parseDouble(source.substring(start, current));
-    addToken(Token.Type.NUMBER, literal);
+    number = Numbers.parse(buffer, start, current);
+    return Token.Type.NUMBER;
   }
 
-  private void parseString() {
+  private Token.Type parseString() {
     while (!atEOF() && peek() != '"') {
       if (poll() == '\n') {
         line++;
@@ -127,38 +299,46 @@ public class Scanner {
     }
 
     if (atEOF()) {
-      Errors.reportError(new StaticError(String.format("[line %d] Error: Unterminated string.", line)));
-      return;
+      error("Unterminated string.");
+      return null;
     }
 
     poll();
-    var literal = source.substring(start + 1, current - 1);
-    addToken(Token.Type.STRING, literal);
+    return Token.Type.STRING;
   }
 
-  private void addToken(Token.Type type) {
-    addToken(type, null);
+  private void error(String message) {
+    errors.accept(new LexicalError(start, line, message));
+  }
+
+  private Token token(Token.Type type) {
+    var literal = switch (type) {
+      case Token.Type.NUMBER -> (Object) number;
+      case Token.Type.STRING -> new String(buffer, start + 1, current - start - 2);
+      default -> null;
+    };
+
+    return new Token(type, lexeme(), literal, line);
   }
 
-  private void addToken(Token.Type type, Object literal) {
-    var lexeme = source.substring(start, current);
-    this.tokens.add(new Token(type, lexeme, literal, line));
+  private String lexeme() {
+    return new String(buffer, start, current - start);
   }
 
   private boolean atEOF() {
-    return current >= source.length();
+    return !available(1);
   }
 
   private char peek() {
-    return atEOF() ? '\0' : source.charAt(current);
+    return available(1) ? buffer[current] : '\0';
   }
 
   private char peekNext() {
-    return current + 1 >= source.length() ? '\0' : source.charAt(current + 1);
+    return available(2) ? buffer[current + 1] : '\0';
   }
 
   private char poll() {
-    return atEOF() ? '\0' : source.charAt(current++);
+    return available(1) ? buffer[current++] : '\0';
   }
 
   private boolean match(char symbol) {
@@ -170,6 +350,47 @@ public class Scanner {
     return poll() == symbol;
   }
 
+  private boolean available(int count) {
+    while (current + count > limit) {
+      if (!fill()) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  // Drops the chars before the current token, then reads the next chunk from the reader.
+  private boolean fill() {
+    if (reader == null || drained) {
+      return false;
+    }
+
+    if (start > 0) {
+      System.arraycopy(buffer, start, buffer, 0, limit - start);
+      limit -= start;
+      current -= start;
+      start = 0;
+    }
+
+    if (limit == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+
+    try {
+      var read = reader.read(buffer, limit, buffer.length - limit);
+      if (read < 0) {
+        drained = true;
+        return false;
+      }
+
+      limit += read;
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   public List<Token> getTokens() {
     return tokens;
   }
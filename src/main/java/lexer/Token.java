@@ -30,6 +30,6 @@ public record Token(
 
   @Override
   public String toString() {
-    return String.format("%s %s %s", this.type, this.lexeme, this.literal);
+    return type + " " + lexeme + " " + literal;
   }
 }
@@ -0,0 +1,274 @@
+package lexer;
+
+import errors.Errors;
+import output.OutputSink;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Struct-of-arrays token store: one slot per token in parallel primitive arrays, lexemes and string literals
+ * are read back from the source only when asked for.
+ */
+public class TokenBuffer {
+  private static final Token.Type[] TYPES = Token.Type.values();
+
+  // How far past its end the scanner may look to decide a token, `1.5` vs `1.` is decided two chars after `1`.
+  private static final int LOOKAHEAD = 2;
+
+  private final char[] source;
+  private byte[] types;
+  private int[] starts;
+  private int[] ends;
+  private int[] lines;
+  private double[] numbers;
+  private int size;
+
+  TokenBuffer(char[] source, int capacity) {
+    this.source = source;
+    this.types = new byte[capacity];
+    this.starts = new int[capacity];
+    this.ends = new int[capacity];
+    this.lines = new int[capacity];
+    this.numbers = new double[capacity];
+  }
+
+  void add(Token.Type type, int start, int end, int line, double number) {
+    if (size == types.length) {
+      grow(size * 2);
+    }
+
+    types[size] = (byte) type.ordinal();
+    starts[size] = start;
+    ends[size] = end;
+    lines[size] = line;
+    numbers[size] = number;
+    size++;
+  }
+
+  // Appends tokens [from, to) of `other`, moved by `delta` chars and `lineDelta` lines.
+  void copy(TokenBuffer other, int from, int to, int delta, int lineDelta) {
+    var count = to - from;
+    if (size + count > types.length) {
+      grow(Math.max(size + count, size * 2));
+    }
+
+    System.arraycopy(other.types, from, types, size, count);
+    System.arraycopy(other.starts, from, starts, size, count);
+    System.arraycopy(other.ends, from, ends, size, count);
+    System.arraycopy(other.lines, from, lines, size, count);
+    System.arraycopy(other.numbers, from, numbers, size, count);
+
+    if (delta != 0 || lineDelta != 0) {
+      for (var i = size; i < size + count; i++) {
+        starts[i] += delta;
+        ends[i] += delta;
+        lines[i] += lineDelta;
+      }
+    }
+
+    size += count;
+  }
+
+  // Index of the token starting at `offset`, negative when no token starts there.
+  int find(int offset) {
+    return Arrays.binarySearch(starts, 0, size, offset);
+  }
+
+  private void grow(int capacity) {
+    types = Arrays.copyOf(types, capacity);
+    starts = Arrays.copyOf(starts, capacity);
+    ends = Arrays.copyOf(ends, capacity);
+    lines = Arrays.copyOf(lines, capacity);
+    numbers = Arrays.copyOf(numbers, capacity);
+  }
+
+  /**
+   * The tokens after an {@link #edit}: old tokens [from, oldTo) were replaced by new tokens [from, newTo), the ones
+   * after moved by {@code newTo - oldTo} indexes and {@code lineDelta} lines.
+   */
+  public record Splice(TokenBuffer tokens, int from, int oldTo, int newTo, int lineDelta) {
+  }
+
+  /**
+   * Replaces {@code removed} chars at {@code offset} with {@code text}. Only the tokens the edit can have changed
+   * are re-scanned: from the first token whose scan looked at the edited chars, until a re-scanned token starts
+   * where an old token past the edit did. Scanning is context-free at a token start, so from there on the old
+   * tokens are copied over with their offsets and lines moved. Lexical errors in the re-scanned part go to
+   * {@code errors}.
+   */
+  public Splice edit(int offset, int removed, String text, Errors errors) {
+    Objects.checkFromIndexSize(offset, removed, source.length);
+
+    var delta = text.length() - removed;
+    var edited = new char[source.length + delta];
+    System.arraycopy(source, 0, edited, 0, offset);
+    text.getChars(0, text.length(), edited, offset);
+    System.arraycopy(source, offset + removed, edited, offset + text.length(), source.length - offset - removed);
+
+    var from = firstDamaged(offset);
+    var result = new TokenBuffer(edited, size + 16);
+    result.copy(this, 0, from, 0, 0);
+
+    var line = from > 0 ? lines[from - 1] : 1;
+    var scanner = new Scanner(edited, from > 0 ? ends[from - 1] : 0, line, error -> error.report(errors));
+    var editEnd = offset + text.length();
+
+    // Always returns: at the latest the new EOF lines up with the old one.
+    while (true) {
+      scanner.scanInto(result);
+
+      var last = result.size - 1;
+      if (result.starts[last] < editEnd) {
+        continue;
+      }
+
+      var old = Arrays.binarySearch(starts, from, size, result.starts[last] - delta);
+      if (old >= 0) {
+        var lineDelta = result.lines[last] - lines[old];
+        result.size--;
+        result.copy(this, old, size, delta, lineDelta);
+
+        return new Splice(result, from, old, last, lineDelta);
+      }
+    }
+  }
+
+  // Index of the first token whose scan may have read the char at `offset`.
+  private int firstDamaged(int offset) {
+    int low = 0, high = size - 1;
+
+    while (low < high) {
+      var middle = (low + high) >>> 1;
+
+      if (ends[middle] + LOOKAHEAD > offset) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+
+    return low;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public Token.Type type(int index) {
+    return TYPES[types[index]];
+  }
+
+  public int start(int index) {
+    return starts[index];
+  }
+
+  public int end(int index) {
+    return ends[index];
+  }
+
+  public int line(int index) {
+    return lines[index];
+  }
+
+  public double number(int index) {
+    return numbers[index];
+  }
+
+  public String lexeme(int index) {
+    return new String(source, starts[index], ends[index] - starts[index]);
+  }
+
+  public Object literal(int index) {
+    return switch (type(index)) {
+      case Token.Type.NUMBER -> (Object) numbers[index];
+      case Token.Type.STRING -> new String(source, starts[index] + 1, ends[index] - starts[index] - 2);
+      default -> null;
+    };
+  }
+
+  public Token token(int index) {
+    return new Token(type(index), lexeme(index), literal(index), lines[index]);
+  }
+
+  /**
+   * Prints every token the same way as {@link Token#toString()}, without materializing them.
+   */
+  public void print(OutputSink out) {
+    var line = new StringBuilder();
+
+    for (var i = 0; i < size; i++) {
+      var type = type(i);
+      line.append(type.name()).append(' ').append(source, starts[i], ends[i] - starts[i]).append(' ');
+
+      switch (type) {
+        case Token.Type.NUMBER -> line.append(numbers[i]);
+        case Token.Type.STRING -> line.append(source, starts[i] + 1, ends[i] - starts[i] - 2);
+        default -> line.append("null");
+      }
+
+      line.append(System.lineSeparator());
+
+      if (line.length() >= 8192) {
+        out.print(line);
+        line.setLength(0);
+      }
+    }
+
+    out.print(line);
+  }
+
+  public Cursor cursor() {
+    return cursor(0);
+  }
+
+  public Cursor cursor(int from) {
+    return new Cursor(from);
+  }
+
+  /**
+   * A {@link TokenStream} over this buffer that knows which token it is at.
+   */
+  public class Cursor implements TokenStream {
+    private int current;
+
+    private Cursor(int from) {
+      this.current = from;
+    }
+
+    public int position() {
+      return current;
+    }
+
+    @Override
+    public Token.Type peekType() {
+      return type(current);
+    }
+
+    @Override
+    public Token peek() {
+      return token(current);
+    }
+
+    @Override
+    public Token poll() {
+      var token = token(current);
+      skip();
+      return token;
+    }
+
+    @Override
+    public Object pollLiteral() {
+      var literal = literal(current);
+      skip();
+      return literal;
+    }
+
+    @Override
+    public void skip() {
+      if (current < size - 1) {
+        current++;
+      }
+    }
+  }
+}
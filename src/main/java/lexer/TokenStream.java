@@ -0,0 +1,42 @@
+package lexer;
+
+import java.util.List;
+
+public interface TokenStream {
+  Token peek();
+
+  Token poll();
+
+  default Token.Type peekType() {
+    return peek().type();
+  }
+
+  default Object pollLiteral() {
+    return poll().literal();
+  }
+
+  default void skip() {
+    poll();
+  }
+
+  static TokenStream of(List<Token> tokens) {
+    return new TokenStream() {
+      private int current = 0;
+
+      @Override
+      public Token peek() {
+        return tokens.get(Math.min(current, tokens.size() - 1));
+      }
+
+      @Override
+      public Token poll() {
+        var token = peek();
+        if (current < tokens.size()) {
+          current++;
+        }
+
+        return token;
+      }
+    };
+  }
+}
@@ -0,0 +1,533 @@
+package nodes;
+
+import errors.RuntimeError;
+import lexer.Token;
+import parser.Budget;
+import parser.Globals;
+import parser.LoxFunction;
+import parser.Values;
+
+/**
+ * Executable expression nodes. Binary and unary nodes start uninitialized, rewrite themselves into a number-only
+ * version once they have seen numeric operands, and fall back to the generic version for good as soon as a
+ * specialized node observes any other type.
+ */
+public abstract class ExprNode extends Node {
+  public abstract Object execute();
+
+  public double executeDouble() throws UnexpectedResultException {
+    var value = execute();
+    if (value instanceof Double number) {
+      return number;
+    }
+
+    throw new UnexpectedResultException(value);
+  }
+
+  /**
+   * Whether {@link #executeDouble()} is the cheaper way to run this node.
+   */
+  public boolean returnsDouble() {
+    return false;
+  }
+
+  @Override
+  protected void replaceChild(Node oldChild, Node newChild) {
+    throw new IllegalStateException(getClass().getSimpleName() + " has no children");
+  }
+
+  public static final class Literal extends ExprNode {
+    private final Object value;
+
+    public Literal(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    public Object execute() {
+      return value;
+    }
+  }
+
+  public static final class NumberLiteral extends ExprNode {
+    private final double value;
+
+    public NumberLiteral(double value) {
+      this.value = value;
+    }
+
+    @Override
+    public Object execute() {
+      return value;
+    }
+
+    @Override
+    public double executeDouble() {
+      return value;
+    }
+
+    @Override
+    public boolean returnsDouble() {
+      return true;
+    }
+  }
+
+  public static final class GlobalRead extends ExprNode {
+    private final Globals globals;
+    private final Token name;
+    private final int slot;
+
+    GlobalRead(Globals globals, Token name, int slot) {
+      this.globals = globals;
+      this.name = name;
+      this.slot = slot;
+    }
+
+    @Override
+    public Object execute() {
+      return globals.get(slot, name.lexeme(), name.line());
+    }
+  }
+
+  public static final class LocalRead extends ExprNode {
+    private final Frames frames;
+    private final int depth;
+    private final int slot;
+
+    LocalRead(Frames frames, int depth, int slot) {
+      this.frames = frames;
+      this.depth = depth;
+      this.slot = slot;
+    }
+
+    @Override
+    public Object execute() {
+      return frames.at(depth)[slot];
+    }
+  }
+
+  public static final class GlobalWrite extends ExprNode {
+    private final Globals globals;
+    private final Token name;
+    private final int slot;
+    private ExprNode value;
+
+    GlobalWrite(Globals globals, Token name, int slot, ExprNode value) {
+      this.globals = globals;
+      this.name = name;
+      this.slot = slot;
+      this.value = adopt(value);
+    }
+
+    @Override
+    public Object execute() {
+      return globals.assign(slot, value.execute(), name.lexeme(), name.line());
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      value = (ExprNode) newChild;
+    }
+  }
+
+  public static final class LocalWrite extends ExprNode {
+    private final Frames frames;
+    private final int depth;
+    private final int slot;
+    private ExprNode value;
+
+    LocalWrite(Frames frames, int depth, int slot, ExprNode value) {
+      this.frames = frames;
+      this.depth = depth;
+      this.slot = slot;
+      this.value = adopt(value);
+    }
+
+    @Override
+    public Object execute() {
+      var result = value.execute();
+      frames.at(depth)[slot] = result;
+      return result;
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      value = (ExprNode) newChild;
+    }
+  }
+
+  // A function declaration's value: a function closed over the current frame. Every closure shares the body.
+  public static final class Closure extends ExprNode {
+    private final Frames frames;
+    private final String name;
+    private final int arity;
+    private final int frameSize;
+    private final StmtNode[] body;
+
+    Closure(Frames frames, String name, int arity, int frameSize, StmtNode[] body) {
+      this.frames = frames;
+      this.name = name;
+      this.arity = arity;
+      this.frameSize = frameSize;
+      this.body = body;
+
+      for (var stmt : body) {
+        adopt(stmt);
+      }
+    }
+
+    @Override
+    public Object execute() {
+      return new NodeFunction(name, arity, frameSize, frames.current, frames, body);
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      for (var i = 0; i < body.length; i++) {
+        if (body[i] == oldChild) {
+          body[i] = (StmtNode) newChild;
+        }
+      }
+    }
+  }
+
+  // Arguments go straight into the callee's frame once the callee is known to take them.
+  public static final class Call extends ExprNode {
+    private final int line;
+    private ExprNode callee;
+    private final ExprNode[] arguments;
+
+    Call(int line, ExprNode callee, ExprNode[] arguments) {
+      this.line = line;
+      this.callee = adopt(callee);
+      this.arguments = arguments;
+
+      for (var argument : arguments) {
+        adopt(argument);
+      }
+    }
+
+    @Override
+    public Object execute() {
+      var value = callee.execute();
+
+      if (value instanceof LoxFunction function && function.arity() == arguments.length) {
+        var frame = function.frame();
+        for (var i = 0; i < arguments.length; i++) {
+          frame[i + 1] = arguments[i].execute();
+        }
+
+        return function.call(frame, line);
+      }
+
+      for (var argument : arguments) {
+        argument.execute();
+      }
+
+      throw LoxFunction.callError(value, arguments.length, line);
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      if (callee == oldChild) {
+        callee = (ExprNode) newChild;
+        return;
+      }
+
+      for (var i = 0; i < arguments.length; i++) {
+        if (arguments[i] == oldChild) {
+          arguments[i] = (ExprNode) newChild;
+        }
+      }
+    }
+  }
+
+  abstract static sealed class Binary extends ExprNode permits UninitializedBinary, NumberBinary, GenericBinary {
+    protected final Token operator;
+    // Charged for the strings + concatenates, rewrites hand it on.
+    protected final Budget budget;
+    protected ExprNode left, right;
+
+    Binary(Token operator, ExprNode left, ExprNode right, Budget budget) {
+      this.operator = operator;
+      this.budget = budget;
+      this.left = adopt(left);
+      this.right = adopt(right);
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      if (left == oldChild) {
+        left = (ExprNode) newChild;
+      } else if (right == oldChild) {
+        right = (ExprNode) newChild;
+      } else {
+        throw new IllegalStateException("Not a child of this node: " + oldChild);
+      }
+    }
+
+    protected final GenericBinary generalize() {
+      return replace(new GenericBinary(operator, left, right, budget));
+    }
+  }
+
+  public static final class UninitializedBinary extends Binary {
+    public UninitializedBinary(Token operator, ExprNode left, ExprNode right, Budget budget) {
+      super(operator, left, right, budget);
+    }
+
+    @Override
+    public Object execute() {
+      var leftValue = left.execute();
+      var rightValue = right.execute();
+
+      if (leftValue instanceof Double && rightValue instanceof Double && NumberBinary.supports(operator.type())) {
+        replace(new NumberBinary(operator, left, right, budget));
+      } else {
+        generalize();
+      }
+
+      return GenericBinary.apply(operator, budget, leftValue, rightValue);
+    }
+  }
+
+  /**
+   * Both operands are numbers: arithmetic stays in primitive doubles, comparisons return cached Booleans.
+   */
+  public static final class NumberBinary extends Binary {
+    NumberBinary(Token operator, ExprNode left, ExprNode right, Budget budget) {
+      super(operator, left, right, budget);
+    }
+
+    static boolean supports(Token.Type type) {
+      return switch (type) {
+        case Token.Type.PLUS, Token.Type.MINUS, Token.Type.STAR, Token.Type.SLASH,
+             Token.Type.GREATER, Token.Type.GREATER_EQUAL, Token.Type.LESS, Token.Type.LESS_EQUAL,
+             Token.Type.EQUAL_EQUAL, Token.Type.BANG_EQUAL -> true;
+        default -> false;
+      };
+    }
+
+    private boolean isArithmetic() {
+      return switch (operator.type()) {
+        case Token.Type.PLUS, Token.Type.MINUS, Token.Type.STAR, Token.Type.SLASH -> true;
+        default -> false;
+      };
+    }
+
+    @Override
+    public boolean returnsDouble() {
+      return isArithmetic();
+    }
+
+    @Override
+    public Object execute() {
+      double leftValue, rightValue;
+      try {
+        leftValue = left.executeDouble();
+      } catch (UnexpectedResultException e) {
+        return generalize().apply(e.result(), right.execute());
+      }
+
+      try {
+        rightValue = right.executeDouble();
+      } catch (UnexpectedResultException e) {
+        return generalize().apply(leftValue, e.result());
+      }
+
+      return switch (operator.type()) {
+        case Token.Type.PLUS -> leftValue + rightValue;
+        case Token.Type.MINUS -> leftValue - rightValue;
+        case Token.Type.STAR -> leftValue * rightValue;
+        case Token.Type.SLASH -> leftValue / rightValue;
+        case Token.Type.GREATER -> leftValue > rightValue;
+        case Token.Type.GREATER_EQUAL -> leftValue >= rightValue;
+        case Token.Type.LESS -> leftValue < rightValue;
+        case Token.Type.LESS_EQUAL -> leftValue <= rightValue;
+        case Token.Type.EQUAL_EQUAL -> Values.isEqual(leftValue, rightValue);
+        case Token.Type.BANG_EQUAL -> !Values.isEqual(leftValue, rightValue);
+        default -> throw new IllegalStateException("Unexpected operator: " + operator.type());
+      };
+    }
+
+    @Override
+    public double executeDouble() throws UnexpectedResultException {
+      if (!isArithmetic()) {
+        return super.executeDouble();
+      }
+
+      double leftValue, rightValue;
+      try {
+        leftValue = left.executeDouble();
+      } catch (UnexpectedResultException e) {
+        return expectDouble(generalize().apply(e.result(), right.execute()));
+      }
+
+      try {
+        rightValue = right.executeDouble();
+      } catch (UnexpectedResultException e) {
+        return expectDouble(generalize().apply(leftValue, e.result()));
+      }
+
+      return switch (operator.type()) {
+        case Token.Type.PLUS -> leftValue + rightValue;
+        case Token.Type.MINUS -> leftValue - rightValue;
+        case Token.Type.STAR -> leftValue * rightValue;
+        default -> leftValue / rightValue;
+      };
+    }
+
+    private static double expectDouble(Object value) throws UnexpectedResultException {
+      if (value instanceof Double number) {
+        return number;
+      }
+
+      throw new UnexpectedResultException(value);
+    }
+  }
+
+  public static final class GenericBinary extends Binary {
+    GenericBinary(Token operator, ExprNode left, ExprNode right, Budget budget) {
+      super(operator, left, right, budget);
+    }
+
+    @Override
+    public Object execute() {
+      return apply(left.execute(), right.execute());
+    }
+
+    Object apply(Object leftValue, Object rightValue) {
+      return apply(operator, budget, leftValue, rightValue);
+    }
+
+    static Object apply(Token operator, Budget budget, Object leftValue, Object rightValue) {
+      return switch (operator.type()) {
+        case Token.Type.PLUS -> {
+          if (leftValue instanceof Double d1 && rightValue instanceof Double d2) {
+            yield d1 + d2;
+          }
+
+          if (leftValue instanceof CharSequence s1 && rightValue instanceof CharSequence s2) {
+            yield budget.concat(s1, s2);
+          }
+
+          throw new RuntimeError(Values.OPERANDS_MUST_BE_NUMBERS_OR_STRINGS, operator);
+        }
+        case Token.Type.MINUS -> checkNumbers(operator, leftValue, rightValue) - (double) rightValue;
+        case Token.Type.STAR -> checkNumbers(operator, leftValue, rightValue) * (double) rightValue;
+        case Token.Type.SLASH -> checkNumbers(operator, leftValue, rightValue) / (double) rightValue;
+        case Token.Type.EQUAL_EQUAL -> Values.isEqual(leftValue, rightValue);
+        case Token.Type.BANG_EQUAL -> !Values.isEqual(leftValue, rightValue);
+        case Token.Type.GREATER -> checkNumbers(operator, leftValue, rightValue) > (double) rightValue;
+        case Token.Type.GREATER_EQUAL -> checkNumbers(operator, leftValue, rightValue) >= (double) rightValue;
+        case Token.Type.LESS -> checkNumbers(operator, leftValue, rightValue) < (double) rightValue;
+        case Token.Type.LESS_EQUAL -> checkNumbers(operator, leftValue, rightValue) <= (double) rightValue;
+        case Token.Type.AND -> Values.isTruthy(leftValue) && Values.isTruthy(rightValue);
+        case Token.Type.OR -> Values.isTruthy(leftValue) || Values.isTruthy(rightValue);
+        default -> null;
+      };
+    }
+
+    // Returns the left operand once both are known to be numbers.
+    private static double checkNumbers(Token operator, Object leftValue, Object rightValue) {
+      if (!(leftValue instanceof Double number) || !(rightValue instanceof Double)) {
+        throw new RuntimeError(Values.OPERANDS_MUST_BE_NUMBERS, operator);
+      }
+
+      return number;
+    }
+  }
+
+  abstract static sealed class Unary extends ExprNode permits UninitializedUnary, NumberNegate, GenericUnary {
+    protected final Token operator;
+    protected ExprNode right;
+
+    Unary(Token operator, ExprNode right) {
+      this.operator = operator;
+      this.right = adopt(right);
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      right = (ExprNode) newChild;
+    }
+  }
+
+  public static final class UninitializedUnary extends Unary {
+    public UninitializedUnary(Token operator, ExprNode right) {
+      super(operator, right);
+    }
+
+    @Override
+    public Object execute() {
+      var rightValue = right.execute();
+
+      if (rightValue instanceof Double && operator.type() == Token.Type.MINUS) {
+        replace(new NumberNegate(operator, right));
+      } else {
+        replace(new GenericUnary(operator, right));
+      }
+
+      return GenericUnary.apply(operator, rightValue);
+    }
+  }
+
+  public static final class NumberNegate extends Unary {
+    NumberNegate(Token operator, ExprNode right) {
+      super(operator, right);
+    }
+
+    @Override
+    public boolean returnsDouble() {
+      return true;
+    }
+
+    @Override
+    public Object execute() {
+      try {
+        return executeDouble();
+      } catch (UnexpectedResultException e) {
+        return e.result();
+      }
+    }
+
+    @Override
+    public double executeDouble() throws UnexpectedResultException {
+      try {
+        return -right.executeDouble();
+      } catch (UnexpectedResultException e) {
+        // Always throws: negating a non-number is a runtime error.
+        return (double) replace(new GenericUnary(operator, right)).apply(e.result());
+      }
+    }
+  }
+
+  public static final class GenericUnary extends Unary {
+    GenericUnary(Token operator, ExprNode right) {
+      super(operator, right);
+    }
+
+    @Override
+    public Object execute() {
+      return apply(right.execute());
+    }
+
+    Object apply(Object rightValue) {
+      return apply(operator, rightValue);
+    }
+
+    static Object apply(Token operator, Object rightValue) {
+      return switch (operator.type()) {
+        case Token.Type.MINUS -> {
+          if (!(rightValue instanceof Double number)) {
+            throw new RuntimeError(Values.OPERAND_MUST_BE_NUMBER, operator);
+          }
+
+          yield -number;
+        }
+        case Token.Type.BANG -> !Values.isTruthy(rightValue);
+        default -> null;
+      };
+    }
+  }
+}
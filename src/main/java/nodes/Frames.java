@@ -0,0 +1,18 @@
+package nodes;
+
+/**
+ * The innermost block or call frame of a running node tree, null at the top level; see parser.Resolver for the
+ * layout. Blocks and calls push and pop frames here, local variable nodes reach theirs from it.
+ */
+final class Frames {
+  Object[] current;
+
+  Object[] at(int depth) {
+    var frame = current;
+    for (var i = 0; i < depth; i++) {
+      frame = (Object[]) frame[0];
+    }
+
+    return frame;
+  }
+}
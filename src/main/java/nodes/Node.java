@@ -0,0 +1,48 @@
+package nodes;
+
+/**
+ * Base of the executable node tree. A node can swap itself for a more specialized (or more generic) version
+ * in its parent via {@link #replace(Node)}.
+ * <p>
+ * Function bodies are shared by every activation, so a recursive call can rewrite a node while an outer activation
+ * is still running it. Each node remembers what replaced it: a second rewrite of the same node leaves the tree as the
+ * first one made it, and the node it creates only finishes the outer activation.
+ */
+public abstract class Node {
+  Node parent;
+  // What replaced this node in its parent, null while it is in the tree.
+  private Node replacement;
+
+  protected final <T extends Node> T adopt(T child) {
+    child.parent = this;
+    return child;
+  }
+
+  protected final <T extends Node> T replace(T newNode) {
+    if (replacement != null) {
+      // Replaced already, `newNode` stays out of the tree. It adopted this node's children, which its own
+      // replacement holds, so rewrites of those children go there.
+      ((Node) newNode).replacement = current();
+      return newNode;
+    }
+
+    // The parent may itself be such a node that never made it into the tree.
+    var holder = parent.current();
+    holder.replaceChild(this, newNode);
+    newNode.parent = holder;
+    replacement = newNode;
+    return newNode;
+  }
+
+  // The node in the tree standing for this one.
+  private Node current() {
+    var node = this;
+    while (node.replacement != null) {
+      node = node.replacement;
+    }
+
+    return node;
+  }
+
+  protected abstract void replaceChild(Node oldChild, Node newChild);
+}
@@ -0,0 +1,140 @@
+package nodes;
+
+import output.OutputSink;
+import parser.Budget;
+import parser.Expr;
+import parser.Globals;
+import parser.Resolver;
+import parser.Stmt;
+
+import java.util.List;
+
+/**
+ * Translates the parsed tree into uninitialized executable nodes. Everything built by one builder shares its
+ * globals and frames, they are one program. A function declaration becomes a declaration of its closure.
+ */
+public class NodeBuilder implements Stmt.Visitor<StmtNode>, Expr.Visitor<ExprNode> {
+  private final OutputSink out;
+  private final Budget budget;
+  private final Globals globals = new Globals();
+  private final Frames frames = new Frames();
+
+  public NodeBuilder(OutputSink out, Budget budget) {
+    this.out = out;
+    this.budget = budget;
+  }
+
+  public StmtNode build(Stmt stmt) {
+    return stmt.accept(this).charging(budget, Budget.steps(stmt));
+  }
+
+  @Override
+  public StmtNode visitBlockStmt(Stmt.Block stmt) {
+    return new StmtNode.Block(frames, stmt.frameSize(), build(stmt.stmts()));
+  }
+
+  @Override
+  public StmtNode visitExpressionStmt(Stmt.Expression stmt) {
+    return new StmtNode.Expression(build(stmt.expr()));
+  }
+
+  @Override
+  public StmtNode visitFunctionStmt(Stmt.Function stmt) {
+    var closure = new ExprNode.Closure(frames, stmt.name().lexeme(), stmt.params().size(), stmt.frameSize(), build(stmt.body()));
+    return declare(stmt.depth(), stmt.slot(), closure);
+  }
+
+  @Override
+  public StmtNode visitIfStmt(Stmt.If stmt) {
+    var elseBranch = stmt.elseBranch() == null ? null : build(stmt.elseBranch());
+    return new StmtNode.If(build(stmt.condition()), build(stmt.thenBranch()), elseBranch);
+  }
+
+  @Override
+  public StmtNode visitPrintStmt(Stmt.Print stmt) {
+    return new StmtNode.Print(build(stmt.expr()), out);
+  }
+
+  @Override
+  public StmtNode visitReturnStmt(Stmt.Return stmt) {
+    return new StmtNode.Return(build(stmt.value()));
+  }
+
+  @Override
+  public StmtNode visitVarStmt(Stmt.Var stmt) {
+    return declare(stmt.depth(), stmt.slot(), build(stmt.initializer()));
+  }
+
+  @Override
+  public ExprNode visitAssignExpr(Expr.Assign expr) {
+    if (expr.depth() == Resolver.GLOBAL) {
+      return new ExprNode.GlobalWrite(globals, expr.name(), expr.slot(), build(expr.value()));
+    }
+
+    return new ExprNode.LocalWrite(frames, expr.depth(), expr.slot(), build(expr.value()));
+  }
+
+  @Override
+  public ExprNode visitBinaryExpr(Expr.Binary expr) {
+    return new ExprNode.UninitializedBinary(expr.operator(), build(expr.left()), build(expr.right()), budget);
+  }
+
+  @Override
+  public ExprNode visitCallExpr(Expr.Call expr) {
+    var arguments = new ExprNode[expr.arguments().size()];
+    for (var i = 0; i < arguments.length; i++) {
+      arguments[i] = build(expr.arguments().get(i));
+    }
+
+    return new ExprNode.Call(expr.paren().line(), build(expr.callee()), arguments);
+  }
+
+  @Override
+  public ExprNode visitGroupingExpr(Expr.Grouping expr) {
+    return build(expr.expr());
+  }
+
+  @Override
+  public ExprNode visitLiteralExpr(Expr.Literal expr) {
+    if (expr.literal() instanceof Double number) {
+      return new ExprNode.NumberLiteral(number);
+    }
+
+    return new ExprNode.Literal(expr.literal());
+  }
+
+  @Override
+  public ExprNode visitUnaryExpr(Expr.Unary expr) {
+    return new ExprNode.UninitializedUnary(expr.operator(), build(expr.right()));
+  }
+
+  @Override
+  public ExprNode visitVariableExpr(Expr.Variable expr) {
+    if (expr.depth() == Resolver.GLOBAL) {
+      return new ExprNode.GlobalRead(globals, expr.name(), expr.slot());
+    }
+
+    return new ExprNode.LocalRead(frames, expr.depth(), expr.slot());
+  }
+
+  private StmtNode[] build(List<Stmt> stmts) {
+    var nodes = new StmtNode[stmts.size()];
+    for (var i = 0; i < nodes.length; i++) {
+      nodes[i] = build(stmts.get(i));
+    }
+
+    return nodes;
+  }
+
+  private ExprNode build(Expr expr) {
+    return expr.accept(this);
+  }
+
+  private StmtNode declare(int depth, int slot, ExprNode value) {
+    if (depth == Resolver.GLOBAL) {
+      return new StmtNode.GlobalVar(globals, slot, value);
+    }
+
+    return new StmtNode.LocalVar(frames, slot, value);
+  }
+}
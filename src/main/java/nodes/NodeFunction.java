@@ -0,0 +1,28 @@
+package nodes;
+
+import parser.LoxFunction;
+
+// A function declared to a node tree, its body runs in the tree's frames.
+final class NodeFunction extends LoxFunction {
+  private final Frames frames;
+  private final StmtNode[] body;
+
+  NodeFunction(String name, int arity, int frameSize, Object[] closure, Frames frames, StmtNode[] body) {
+    super(name, arity, frameSize, closure);
+    this.frames = frames;
+    this.body = body;
+  }
+
+  @Override
+  public Object call(Object[] frame) {
+    var caller = frames.current;
+    frames.current = frame;
+
+    try {
+      var completion = StmtNode.execute(body);
+      return completion == StmtNode.NORMAL ? null : completion;
+    } finally {
+      frames.current = caller;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package nodes;
+
+import errors.Errors;
+import errors.RuntimeError;
+import output.OutputSink;
+import parser.Budget;
+import parser.Engine;
+import parser.Stmt;
+
+public class NodeInterpreter implements Engine {
+  private final NodeBuilder builder;
+  private final Errors errors;
+
+  public NodeInterpreter(OutputSink out, Errors errors) {
+    this(out, errors, Budget.unlimited());
+  }
+
+  public NodeInterpreter(OutputSink out, Errors errors, Budget budget) {
+    this.builder = new NodeBuilder(out, budget);
+    this.errors = errors;
+  }
+
+  @Override
+  public void interpret(Iterable<Stmt> stmts) {
+    try {
+      for (var stmt : stmts) {
+        builder.build(stmt).execute();
+      }
+    } catch (RuntimeError error) {
+      errors.reportError(error);
+    }
+  }
+}
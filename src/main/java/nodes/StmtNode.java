@@ -0,0 +1,228 @@
+package nodes;
+
+import output.OutputSink;
+import parser.Budget;
+import parser.Globals;
+import parser.Values;
+
+/**
+ * Executable statement nodes. Executing one charges the budget its own steps, see {@link Budget#steps}, then runs it;
+ * it returns {@link #NORMAL} when it completed, or the value of the return statement that ended it, which the
+ * statements around pass on up to the call.
+ */
+public abstract class StmtNode extends Node {
+  public static final Object NORMAL = new Object();
+
+  private Budget budget;
+  private long steps;
+
+  public final Object execute() {
+    budget.charge(steps);
+    return run();
+  }
+
+  protected abstract Object run();
+
+  // Set by the builder once the node is built.
+  final StmtNode charging(Budget budget, long steps) {
+    this.budget = budget;
+    this.steps = steps;
+    return this;
+  }
+
+  // Runs statements until one returns.
+  static Object execute(StmtNode[] stmts) {
+    for (var stmt : stmts) {
+      var completion = stmt.execute();
+      if (completion != NORMAL) {
+        return completion;
+      }
+    }
+
+    return NORMAL;
+  }
+
+  public static final class Expression extends StmtNode {
+    private ExprNode expr;
+
+    public Expression(ExprNode expr) {
+      this.expr = adopt(expr);
+    }
+
+    @Override
+    protected Object run() {
+      expr.execute();
+      return NORMAL;
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      expr = (ExprNode) newChild;
+    }
+  }
+
+  public static final class Print extends StmtNode {
+    private final OutputSink out;
+    private ExprNode expr;
+
+    public Print(ExprNode expr, OutputSink out) {
+      this.out = out;
+      this.expr = adopt(expr);
+    }
+
+    @Override
+    protected Object run() {
+      if (expr.returnsDouble()) {
+        try {
+          Values.println(out, expr.executeDouble());
+        } catch (UnexpectedResultException e) {
+          Values.println(out, e.result());
+        }
+      } else {
+        Values.println(out, expr.execute());
+      }
+
+      return NORMAL;
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      expr = (ExprNode) newChild;
+    }
+  }
+
+  public static final class Block extends StmtNode {
+    private final Frames frames;
+    private final int frameSize;
+    private final StmtNode[] stmts;
+
+    // A frameSize of 0 runs the statements in the enclosing frame.
+    Block(Frames frames, int frameSize, StmtNode[] stmts) {
+      this.frames = frames;
+      this.frameSize = frameSize;
+      this.stmts = stmts;
+
+      for (var stmt : stmts) {
+        adopt(stmt);
+      }
+    }
+
+    @Override
+    protected Object run() {
+      if (frameSize == 0) {
+        return execute(stmts);
+      }
+
+      var enclosing = frames.current;
+      var frame = new Object[frameSize];
+      frame[0] = enclosing;
+      frames.current = frame;
+
+      try {
+        return execute(stmts);
+      } finally {
+        frames.current = enclosing;
+      }
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      for (var i = 0; i < stmts.length; i++) {
+        if (stmts[i] == oldChild) {
+          stmts[i] = (StmtNode) newChild;
+        }
+      }
+    }
+  }
+
+  public static final class GlobalVar extends StmtNode {
+    private final Globals globals;
+    private final int slot;
+    private ExprNode initializer;
+
+    GlobalVar(Globals globals, int slot, ExprNode initializer) {
+      this.globals = globals;
+      this.slot = slot;
+      this.initializer = adopt(initializer);
+    }
+
+    @Override
+    protected Object run() {
+      globals.define(slot, initializer.execute());
+      return NORMAL;
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      initializer = (ExprNode) newChild;
+    }
+  }
+
+  public static final class LocalVar extends StmtNode {
+    private final Frames frames;
+    private final int slot;
+    private ExprNode initializer;
+
+    LocalVar(Frames frames, int slot, ExprNode initializer) {
+      this.frames = frames;
+      this.slot = slot;
+      this.initializer = adopt(initializer);
+    }
+
+    @Override
+    protected Object run() {
+      frames.current[slot] = initializer.execute();
+      return NORMAL;
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      initializer = (ExprNode) newChild;
+    }
+  }
+
+  public static final class If extends StmtNode {
+    private ExprNode condition;
+    private final StmtNode thenBranch;
+    // Null without an else.
+    private final StmtNode elseBranch;
+
+    If(ExprNode condition, StmtNode thenBranch, StmtNode elseBranch) {
+      this.condition = adopt(condition);
+      this.thenBranch = thenBranch;
+      this.elseBranch = elseBranch;
+    }
+
+    @Override
+    protected Object run() {
+      if (Values.isTruthy(condition.execute())) {
+        return thenBranch.execute();
+      }
+
+      return elseBranch == null ? NORMAL : elseBranch.execute();
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      condition = (ExprNode) newChild;
+    }
+  }
+
+  public static final class Return extends StmtNode {
+    private ExprNode value;
+
+    Return(ExprNode value) {
+      this.value = adopt(value);
+    }
+
+    @Override
+    protected Object run() {
+      return value.execute();
+    }
+
+    @Override
+    protected void replaceChild(Node oldChild, Node newChild) {
+      value = (ExprNode) newChild;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package nodes;
+
+/**
+ * Thrown by a typed execute method when the value produced doesn't have the expected type. Carries the value so
+ * the caller can continue generically. Stackless: it is a deoptimization signal, not an error.
+ */
+public class UnexpectedResultException extends Exception {
+  private final Object result;
+
+  public UnexpectedResultException(Object result) {
+    super(null, null, false, false);
+    this.result = result;
+  }
+
+  public Object result() {
+    return result;
+  }
+}
@@ -0,0 +1,51 @@
+package optimizer;
+
+import errors.Errors;
+import errors.RuntimeError;
+import lexer.Token;
+import output.OutputSink;
+import parser.Budget;
+import parser.Expr;
+import parser.Interpreter;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Evaluates operators over constant operands at compile time, bottom-up so whole constant subtrees collapse.
+ * Operations that would fail at runtime are left in place, so the error is still raised, with its line, when
+ * the program runs. String concatenation is left in place too: the run's budget charges the bytes it produces
+ * when it runs, as it does without this pass.
+ */
+public class ConstantFolding extends Pass {
+  // Expressions neither print nor report, they only throw. Each pass gets its own, the interpreter has state.
+  private final Interpreter evaluator = new Interpreter(OutputSink.of(OutputStream.nullOutputStream(), StandardCharsets.UTF_8), new Errors());
+
+  @Override
+  public Expr visitBinaryExpr(Expr.Binary expr) {
+    if (constant(expr.left()) != null && constant(expr.right()) != null && !concatenates(expr)) {
+      return fold(expr);
+    }
+
+    return expr;
+  }
+
+  @Override
+  public Expr visitUnaryExpr(Expr.Unary expr) {
+    return constant(expr.right()) != null ? fold(expr) : expr;
+  }
+
+  Expr fold(Expr expr) {
+    try {
+      // The literal takes the steps the expression would have, folding doesn't stretch a step limit.
+      return new Expr.Literal(evaluator.evaluate(expr), Budget.steps(expr));
+    } catch (RuntimeError ignored) {
+      return expr;
+    }
+  }
+
+  private static boolean concatenates(Expr.Binary binary) {
+    return binary.operator().type() == Token.Type.PLUS
+        && (constant(binary.left()).literal() instanceof String || constant(binary.right()).literal() instanceof String);
+  }
+}
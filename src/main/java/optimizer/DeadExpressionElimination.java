@@ -0,0 +1,13 @@
+package optimizer;
+
+import parser.Stmt;
+
+/**
+ * Removes expression statements that only compute a constant: they can neither fail nor have an effect.
+ */
+public class DeadExpressionElimination extends Pass {
+  @Override
+  public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+    return constant(stmt.expr()) != null ? null : stmt;
+  }
+}
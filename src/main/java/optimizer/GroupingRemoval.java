@@ -0,0 +1,13 @@
+package optimizer;
+
+import parser.Expr;
+
+/**
+ * Drops parentheses: the tree shape already encodes the precedence they asked for.
+ */
+public class GroupingRemoval extends Pass {
+  @Override
+  public Expr visitGroupingExpr(Expr.Grouping expr) {
+    return expr.expr();
+  }
+}
@@ -0,0 +1,212 @@
+package optimizer;
+
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A tree-to-tree rewrite. The default statement visits rebuild a statement only when one of its children changed,
+ * passes override the nodes they care about. Returning null from {@link #apply(Stmt)} drops the statement, also from
+ * a block.
+ * <p>
+ * Expressions are rewritten bottom-up with explicit stacks, they can be deeper than the call stack allows: an
+ * expression visit gets the node already rebuilt over its rewritten operands, and only rewrites that node. The
+ * defaults return it as it is.
+ */
+public abstract class Pass implements Stmt.Visitor<Stmt>, Expr.Visitor<Expr> {
+  public Stmt apply(Stmt stmt) {
+    return stmt.accept(this);
+  }
+
+  public Expr apply(Expr expr) {
+    return rewrite(expr);
+  }
+
+  protected Expr rewrite(Expr expr) {
+    // Expressions to rewrite, and Rebuild markers for nodes whose operands are on `rewritten`, last operand on top.
+    var pending = new ArrayDeque<Object>();
+    var rewritten = new ArrayDeque<Expr>();
+    pending.push(expr);
+
+    while (!pending.isEmpty()) {
+      switch (pending.pop()) {
+        case Rebuild rebuild -> rewritten.push(rebuild(rebuild.expr(), rewritten).accept(this));
+        case Expr.Literal literal -> rewritten.push(literal.accept(this));
+        case Expr.Variable variable -> rewritten.push(variable.accept(this));
+        case Expr next -> {
+          pending.push(new Rebuild(next));
+          switch (next) {
+            case Expr.Assign assign -> pending.push(assign.value());
+            case Expr.Binary binary -> {
+              pending.push(binary.right());
+              pending.push(binary.left());
+            }
+            case Expr.Call call -> {
+              for (var i = call.arguments().size() - 1; i >= 0; i--) {
+                pending.push(call.arguments().get(i));
+              }
+              pending.push(call.callee());
+            }
+            case Expr.Grouping grouping -> pending.push(grouping.expr());
+            case Expr.Unary unary -> pending.push(unary.right());
+            default -> throw new IllegalStateException("Unexpected expression: " + next);
+          }
+        }
+        default -> throw new IllegalStateException();
+      }
+    }
+
+    return rewritten.pop();
+  }
+
+  private record Rebuild(Expr expr) {
+  }
+
+  // `expr` over its rewritten operands, popped off `rewritten`; the node itself when none changed.
+  private static Expr rebuild(Expr expr, ArrayDeque<Expr> rewritten) {
+    return switch (expr) {
+      case Expr.Assign assign -> {
+        var value = rewritten.pop();
+        yield value == assign.value() ? assign : new Expr.Assign(assign.name(), value, assign.depth(), assign.slot());
+      }
+      case Expr.Binary binary -> {
+        var right = rewritten.pop();
+        var left = rewritten.pop();
+        yield left == binary.left() && right == binary.right() ? binary : new Expr.Binary(left, right, binary.operator());
+      }
+      case Expr.Call call -> {
+        var arguments = new Expr[call.arguments().size()];
+        var same = true;
+        for (var i = arguments.length - 1; i >= 0; i--) {
+          arguments[i] = rewritten.pop();
+          same &= arguments[i] == call.arguments().get(i);
+        }
+        var callee = rewritten.pop();
+        yield same && callee == call.callee() ? call : new Expr.Call(callee, call.paren(), List.of(arguments));
+      }
+      case Expr.Grouping grouping -> {
+        var inner = rewritten.pop();
+        yield inner == grouping.expr() ? grouping : new Expr.Grouping(inner);
+      }
+      case Expr.Unary unary -> {
+        var right = rewritten.pop();
+        yield right == unary.right() ? unary : new Expr.Unary(right, unary.operator());
+      }
+      default -> throw new IllegalStateException("Unexpected expression: " + expr);
+    };
+  }
+
+  @Override
+  public Stmt visitBlockStmt(Stmt.Block stmt) {
+    var stmts = apply(stmt.stmts());
+    return stmts == stmt.stmts() ? stmt : new Stmt.Block(stmts, stmt.frameSize());
+  }
+
+  @Override
+  public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+    var expr = rewrite(stmt.expr());
+    return expr == stmt.expr() ? stmt : new Stmt.Expression(expr);
+  }
+
+  @Override
+  public Stmt visitFunctionStmt(Stmt.Function stmt) {
+    var body = apply(stmt.body());
+    return body == stmt.body() ? stmt : new Stmt.Function(stmt.name(), stmt.params(), body, stmt.depth(), stmt.slot(), stmt.frameSize());
+  }
+
+  // A dropped then branch becomes an empty block, a dropped else branch goes away.
+  @Override
+  public Stmt visitIfStmt(Stmt.If stmt) {
+    var condition = rewrite(stmt.condition());
+    var thenBranch = apply(stmt.thenBranch());
+    var elseBranch = stmt.elseBranch() == null ? null : apply(stmt.elseBranch());
+
+    if (condition == stmt.condition() && thenBranch == stmt.thenBranch() && elseBranch == stmt.elseBranch()) {
+      return stmt;
+    }
+
+    return new Stmt.If(condition, thenBranch == null ? new Stmt.Block(List.of(), 0) : thenBranch, elseBranch);
+  }
+
+  @Override
+  public Stmt visitPrintStmt(Stmt.Print stmt) {
+    var expr = rewrite(stmt.expr());
+    return expr == stmt.expr() ? stmt : new Stmt.Print(expr);
+  }
+
+  @Override
+  public Stmt visitReturnStmt(Stmt.Return stmt) {
+    var value = rewrite(stmt.value());
+    return value == stmt.value() ? stmt : new Stmt.Return(stmt.keyword(), value);
+  }
+
+  @Override
+  public Stmt visitVarStmt(Stmt.Var stmt) {
+    var initializer = rewrite(stmt.initializer());
+    return initializer == stmt.initializer() ? stmt : new Stmt.Var(stmt.name(), initializer, stmt.depth(), stmt.slot());
+  }
+
+  @Override
+  public Expr visitAssignExpr(Expr.Assign expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitBinaryExpr(Expr.Binary expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitCallExpr(Expr.Call expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitGroupingExpr(Expr.Grouping expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitLiteralExpr(Expr.Literal expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitUnaryExpr(Expr.Unary expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitVariableExpr(Expr.Variable expr) {
+    return expr;
+  }
+
+  // The same list when no statement changed, dropped statements are left out.
+  protected List<Stmt> apply(List<Stmt> stmts) {
+    var rewritten = new ArrayList<Stmt>(stmts.size());
+    var changed = false;
+
+    for (var stmt : stmts) {
+      var next = apply(stmt);
+      changed |= next != stmt;
+
+      if (next != null) {
+        rewritten.add(next);
+      }
+    }
+
+    return changed ? rewritten : stmts;
+  }
+
+  // Sees through groupings, which don't change the value.
+  protected static Expr.Literal constant(Expr expr) {
+    return switch (expr) {
+      case Expr.Literal literal -> literal;
+      case Expr.Grouping grouping -> constant(grouping.expr());
+      default -> null;
+    };
+  }
+}
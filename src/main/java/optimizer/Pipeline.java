@@ -0,0 +1,119 @@
+package optimizer;
+
+import parser.Expr;
+import parser.Stmt;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Runs a fixed sequence of passes over each top-level statement, between the parser and an engine.
+ */
+public class Pipeline {
+  // Canonical order: ungrouping and unary folding expose more constants to binary folding, which exposes dead code.
+  private static final List<String> PASSES = List.of("ungroup", "unary", "fold", "dce");
+
+  private final List<Pass> passes = new ArrayList<>();
+
+  private Pipeline() {}
+
+  public static Pipeline all() {
+    return of(PASSES);
+  }
+
+  /**
+   * Builds a pipeline from pass names, in canonical order whatever the order given.
+   */
+  public static Pipeline of(Iterable<String> names) {
+    var selected = new ArrayList<String>();
+    for (var name : names) {
+      selected.add(name);
+    }
+
+    for (var name : selected) {
+      if (!PASSES.contains(name)) {
+        throw new IllegalArgumentException("Unknown optimization pass: " + name + ", expected one of " + PASSES);
+      }
+    }
+
+    var pipeline = new Pipeline();
+    for (var name : PASSES) {
+      if (selected.contains(name)) {
+        pipeline.passes.add(create(name));
+      }
+    }
+
+    return pipeline;
+  }
+
+  // A switch rather than a table of constructor references, so runs without passes load none of them.
+  private static Pass create(String name) {
+    return switch (name) {
+      case "ungroup" -> new GroupingRemoval();
+      case "unary" -> new UnaryFolding();
+      case "fold" -> new ConstantFolding();
+      case "dce" -> new DeadExpressionElimination();
+      default -> throw new IllegalArgumentException("Unknown optimization pass: " + name);
+    };
+  }
+
+  public boolean isEmpty() {
+    return passes.isEmpty();
+  }
+
+  /**
+   * Returns the optimized statement, or null when a pass removed it.
+   */
+  public Stmt optimize(Stmt stmt) {
+    for (var pass : passes) {
+      if (stmt == null) {
+        return null;
+      }
+
+      stmt = pass.apply(stmt);
+    }
+
+    return stmt;
+  }
+
+  public Expr optimize(Expr expr) {
+    for (var pass : passes) {
+      expr = pass.apply(expr);
+    }
+
+    return expr;
+  }
+
+  public Iterable<Stmt> optimize(Iterable<Stmt> stmts) {
+    if (isEmpty()) {
+      return stmts;
+    }
+
+    return () -> new Iterator<>() {
+      private final Iterator<Stmt> source = stmts.iterator();
+      private Stmt next;
+
+      @Override
+      public boolean hasNext() {
+        while (next == null && source.hasNext()) {
+          next = optimize(source.next());
+        }
+
+        return next != null;
+      }
+
+      @Override
+      public Stmt next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+
+        var stmt = next;
+        next = null;
+        return stmt;
+      }
+    };
+  }
+}
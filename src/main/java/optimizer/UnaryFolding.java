@@ -0,0 +1,15 @@
+package optimizer;
+
+import parser.Expr;
+
+/**
+ * Folds {@code !} and {@code -} applied to a literal, {@code -} on a non-number is kept for its runtime error.
+ */
+public class UnaryFolding extends Pass {
+  private final ConstantFolding folding = new ConstantFolding();
+
+  @Override
+  public Expr visitUnaryExpr(Expr.Unary expr) {
+    return constant(expr.right()) != null ? folding.fold(expr) : expr;
+  }
+}
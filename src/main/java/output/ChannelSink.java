@@ -0,0 +1,173 @@
+package output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Encodes text into one reusable buffer and writes it to a channel in large blocks. ASCII chars are copied
+ * straight in when the charset encodes them as themselves, anything else goes through a {@link CharsetEncoder}.
+ * Like {@link java.io.PrintStream}, unmappable chars are replaced and write failures only stop the output.
+ */
+public class ChannelSink implements OutputSink {
+  private static final int CAPACITY = 1 << 16;
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+  private static final Set<Charset> ASCII_COMPATIBLE = Set.of(StandardCharsets.UTF_8, StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1);
+
+  private final WritableByteChannel channel;
+  private final CharsetEncoder encoder;
+  private final boolean ascii;
+  private final byte[] bytes = new byte[CAPACITY];
+  private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+  // Numbers are formatted here first when the charset is ASCII compatible, see Decimals.
+  private final byte[] digits = new byte[Decimals.MAX_LENGTH];
+
+  private FlushPolicy policy = FlushPolicy.BUFFER;
+  private boolean failed;
+  private long drained;
+
+  public ChannelSink(WritableByteChannel channel, Charset charset) {
+    this.channel = channel;
+    this.encoder = charset.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.ascii = ASCII_COMPATIBLE.contains(charset);
+  }
+
+  @Override
+  public void print(CharSequence text) {
+    if (!ascii) {
+      encode(text, 0);
+      return;
+    }
+
+    var length = text.length();
+
+    for (var i = 0; i < length; ) {
+      if (!buffer.hasRemaining()) {
+        drain();
+      }
+
+      var position = buffer.position();
+      var end = Math.min(length, i + buffer.remaining());
+
+      for (; i < end; i++) {
+        var c = text.charAt(i);
+
+        if (c >= 0x80) {
+          buffer.position(position);
+          encode(text, i);
+          return;
+        }
+
+        bytes[position++] = (byte) c;
+      }
+
+      buffer.position(position);
+    }
+  }
+
+  @Override
+  public void println(CharSequence text) {
+    print(text);
+    println();
+  }
+
+  @Override
+  public void println() {
+    print(LINE_SEPARATOR);
+
+    if (policy == FlushPolicy.LINE) {
+      flush();
+    }
+  }
+
+  @Override
+  public void print(long value) {
+    if (ascii) {
+      var at = Decimals.format(value, digits);
+      write(digits, at, digits.length - at);
+    } else {
+      print(Long.toString(value));
+    }
+  }
+
+  @Override
+  public void print(double value) {
+    var at = ascii ? Decimals.format(value, digits) : -1;
+
+    if (at >= 0) {
+      write(digits, at, digits.length - at);
+    } else {
+      print(Double.toString(value));
+    }
+  }
+
+  @Override
+  public void write(byte[] bytes) {
+    write(bytes, 0, bytes.length);
+  }
+
+  @Override
+  public void flush() {
+    drain();
+  }
+
+  @Override
+  public void setFlushPolicy(FlushPolicy policy) {
+    this.policy = policy;
+  }
+
+  // Encodes text[from..] through the encoder, draining whenever the buffer fills up. The encoder keeps its state
+  // between calls, so stateful charsets only write their byte order mark once.
+  private void encode(CharSequence text, int from) {
+    var chars = CharBuffer.wrap(text, from, text.length());
+
+    while (encoder.encode(chars, buffer, false).isOverflow()) {
+      drain();
+    }
+
+    // Only a high surrogate ending the text is left, it is malformed like in PrintStream.
+    if (chars.hasRemaining()) {
+      write(encoder.replacement());
+    }
+  }
+
+  private void write(byte[] from, int offset, int length) {
+    for (var end = offset + length; offset < end; ) {
+      if (!buffer.hasRemaining()) {
+        drain();
+      }
+
+      var count = Math.min(buffer.remaining(), end - offset);
+      buffer.put(from, offset, count);
+      offset += count;
+    }
+  }
+
+  @Override
+  public long written() {
+    return drained + buffer.position();
+  }
+
+  private void drain() {
+    drained += buffer.position();
+    buffer.flip();
+
+    try {
+      while (buffer.hasRemaining() && !failed) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      failed = true;
+    }
+
+    buffer.clear();
+  }
+}
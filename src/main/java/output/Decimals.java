@@ -0,0 +1,87 @@
+package output;
+
+/**
+ * Formats numbers as ASCII backwards into the end of a buffer, with the same text as {@link String#valueOf}. Any
+ * long is handled, doubles only when they are integral or have at most {@link #MAX_FRACTION_DIGITS} digits after the
+ * point in the plain range of {@link Double#toString(double)}, the shortest digits are then the rounded scaled value.
+ */
+final class Decimals {
+  // Any long with its sign, or a double of this class.
+  static final int MAX_LENGTH = 24;
+
+  private static final int MAX_FRACTION_DIGITS = 4;
+  private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4};
+
+  private Decimals() {}
+
+  // Returns where the text starts in `to`.
+  static int format(long value, byte[] to) {
+    // Digits of the negated value, so Long.MIN_VALUE works too.
+    var negative = value < 0;
+    var at = digits(negative ? value : -value, to, to.length);
+
+    if (negative) {
+      to[--at] = '-';
+    }
+
+    return at;
+  }
+
+  // Returns where the text starts in `to`, or -1 if Double.toString has to do it.
+  static int format(double value, byte[] to) {
+    var magnitude = Math.abs(value);
+
+    // Outside of it Double.toString switches to scientific notation, NaN fails too.
+    if (!(magnitude >= 1e-3 && magnitude < 1e7)) {
+      return -1;
+    }
+
+    // A decimal with fewer digits after the point scales to an integer too, give or take the rounding of a product
+    // below 1e11, so this rules out most doubles without a division.
+    var scaled = magnitude * POWERS_OF_TEN[MAX_FRACTION_DIGITS];
+    if (Math.abs(scaled - Math.rint(scaled)) > 1e-4) {
+      return -1;
+    }
+
+    for (var scale = 0; scale <= MAX_FRACTION_DIGITS; scale++) {
+      var candidate = Math.rint(magnitude * POWERS_OF_TEN[scale]);
+
+      // Rounds back to the same double, and no shorter scale did. Neighbours of `candidate` are at least 1e-4 away,
+      // far more than an ulp in this range, so it is the only decimal of its length that does.
+      if (candidate / POWERS_OF_TEN[scale] == magnitude) {
+        var at = to.length;
+        var digits = (long) candidate;
+
+        if (scale == 0) {
+          to[--at] = '0';
+        } else {
+          for (var i = 0; i < scale; i++) {
+            to[--at] = (byte) ('0' + digits % 10);
+            digits /= 10;
+          }
+        }
+
+        to[--at] = '.';
+        at = digits(-digits, to, at);
+
+        if (value < 0) {
+          to[--at] = '-';
+        }
+
+        return at;
+      }
+    }
+
+    return -1;
+  }
+
+  // Writes the digits of -negated backwards before `at`.
+  private static int digits(long negated, byte[] to, int at) {
+    do {
+      to[--at] = (byte) ('0' - negated % 10);
+      negated /= 10;
+    } while (negated != 0);
+
+    return at;
+  }
+}
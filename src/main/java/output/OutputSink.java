@@ -0,0 +1,50 @@
+package output;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+/**
+ * Where a run's standard output goes. Unlike {@link java.io.PrintStream} a sink is not synchronized and only writes
+ * through when its {@link FlushPolicy} says so, it belongs to a single run.
+ */
+public interface OutputSink {
+  enum FlushPolicy {
+    // Write through once the buffer is full, and on flush().
+    BUFFER,
+    // Also write through after every line, for output watched as it happens.
+    LINE
+  }
+
+  void print(CharSequence text);
+
+  void println(CharSequence text);
+
+  void println();
+
+  // Same text as String.valueOf(value), without the string.
+  void print(long value);
+
+  // Same text as String.valueOf(value), without the string.
+  void print(double value);
+
+  // Bytes already encoded in this sink's charset.
+  void write(byte[] bytes);
+
+  void flush();
+
+  // Bytes printed so far, including the ones still buffered.
+  long written();
+
+  void setFlushPolicy(FlushPolicy policy);
+
+  static OutputSink stdout() {
+    return new ChannelSink(new FileOutputStream(FileDescriptor.out).getChannel(), System.out.charset());
+  }
+
+  static OutputSink of(OutputStream out, Charset charset) {
+    return new ChannelSink(Channels.newChannel(out), charset);
+  }
+}
@@ -1,29 +1,98 @@
 package parser;
 
+import lexer.Token;
+
 import java.util.Arrays;
 
-public class AstPrinter implements Expr.Visitor<String> {
-  private static AstPrinter instance;
+public class AstPrinter implements Stmt.Visitor<String>, Expr.Visitor<String> {
+  // Stateless, so one instance is safely shared by concurrent runs.
+  private static final AstPrinter INSTANCE = new AstPrinter();
 
   private AstPrinter() {}
 
   public static AstPrinter getInstance() {
-    if (instance == null) {
-      instance = new AstPrinter();
-    }
-
-    return instance;
+    return INSTANCE;
   }
 
   public String print(Expr expr) {
     return expr.accept(this);
   }
 
+  public String print(Stmt stmt) {
+    return stmt.accept(this);
+  }
+
+  @Override
+  public String visitBlockStmt(Stmt.Block stmt) {
+    var block = new StringBuilder("(block");
+    for (var inner : stmt.stmts()) {
+      block.append(' ').append(print(inner));
+    }
+
+    return block.append(')').toString();
+  }
+
+  @Override
+  public String visitExpressionStmt(Stmt.Expression stmt) {
+    return parenthesize("expr", stmt.expr());
+  }
+
+  @Override
+  public String visitFunctionStmt(Stmt.Function stmt) {
+    var function = new StringBuilder("(fun ").append(stmt.name().lexeme()).append(" (");
+    function.append(String.join(" ", stmt.params().stream().map(Token::lexeme).toList())).append(')');
+    for (var inner : stmt.body()) {
+      function.append(' ').append(print(inner));
+    }
+
+    return function.append(')').toString();
+  }
+
+  @Override
+  public String visitIfStmt(Stmt.If stmt) {
+    var ifStmt = new StringBuilder("(if ").append(print(stmt.condition())).append(' ').append(print(stmt.thenBranch()));
+    if (stmt.elseBranch() != null) {
+      ifStmt.append(' ').append(print(stmt.elseBranch()));
+    }
+
+    return ifStmt.append(')').toString();
+  }
+
+  @Override
+  public String visitPrintStmt(Stmt.Print stmt) {
+    return parenthesize("print", stmt.expr());
+  }
+
+  @Override
+  public String visitReturnStmt(Stmt.Return stmt) {
+    return parenthesize("return", stmt.value());
+  }
+
+  @Override
+  public String visitVarStmt(Stmt.Var stmt) {
+    return parenthesize("var " + stmt.name().lexeme(), stmt.initializer());
+  }
+
+  @Override
+  public String visitAssignExpr(Expr.Assign expr) {
+    return parenthesize("= " + expr.name().lexeme(), expr.value());
+  }
+
   @Override
   public String visitBinaryExpr(Expr.Binary expr) {
     return parenthesize(expr.operator().lexeme(), expr.left(), expr.right());
   }
 
+  @Override
+  public String visitCallExpr(Expr.Call expr) {
+    var call = new StringBuilder("(call ").append(print(expr.callee()));
+    for (var argument : expr.arguments()) {
+      call.append(' ').append(print(argument));
+    }
+
+    return call.append(')').toString();
+  }
+
   @Override
   public String visitGroupingExpr(Expr.Grouping expr) {
     return parenthesize("group", expr.expr());
@@ -39,6 +108,11 @@ public class AstPrinter implements Expr.Visitor<String> {
     return parenthesize(expr.operator().lexeme(), expr.right());
   }
 
+  @Override
+  public String visitVariableExpr(Expr.Variable expr) {
+    return expr.name().lexeme();
+  }
+
   private String parenthesize(String name, Expr... exprs) {
     return "(" + name + " " + String.join(" ", Arrays.stream(exprs).map(this::print).toList()) + ")";
   }
@@ -0,0 +1,129 @@
+package parser;
+
+import errors.BudgetExceeded;
+
+import java.util.ArrayDeque;
+
+/**
+ * Limits on one run: evaluation steps (statements executed plus expression nodes evaluated), wall-clock time since
+ * the budget was created, and UTF-16 bytes of strings produced by concatenation. Engines charge steps as they go;
+ * the hot path only decrements a local allowance, the totals and the clock are checked each time it runs out.
+ * <p>
+ * Steps count the program as written, whatever optimizer passes ran: parentheses take none, and a literal folded
+ * from an expression takes the steps of that expression, see {@link Expr.Literal#steps()}. Dead expression
+ * statements are the one thing an optimizer could drop for free, so the CLI leaves that pass out under a step limit.
+ */
+public final class Budget {
+  private static final long CHECK_INTERVAL = 1 << 12;
+
+  private final long maxSteps;
+  private final long maxNanos;
+  private final long maxStringBytes;
+  private final long start = System.nanoTime();
+
+  private long steps;
+  private long granted;
+  private long allowance;
+  private long stringBytes;
+
+  // Long.MAX_VALUE for no limit.
+  public Budget(long maxSteps, long maxNanos, long maxStringBytes) {
+    this.maxSteps = maxSteps;
+    this.maxNanos = maxNanos;
+    this.maxStringBytes = maxStringBytes;
+  }
+
+  public static Budget unlimited() {
+    return new Budget(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+  }
+
+  public void step() {
+    if (--allowance < 0) {
+      check();
+    }
+  }
+
+  public void charge(long count) {
+    allowance -= count;
+    if (allowance < 0) {
+      check();
+    }
+  }
+
+  public CharSequence concat(CharSequence left, CharSequence right) {
+    stringBytes += (long) Character.BYTES * (left.length() + right.length());
+    if (stringBytes > maxStringBytes) {
+      throw new BudgetExceeded("Execution budget exceeded: more than " + maxStringBytes + " string bytes.");
+    }
+
+    return Rope.concat(left, right);
+  }
+
+  // Steps a statement takes itself: one for it and one per expression node it evaluates, which it evaluates exactly
+  // once since operators don't short-circuit. Statements nested in it, in blocks, branches or function bodies, are
+  // charged when they run, so engines charging this before each statement charge what the tree walker does.
+  public static long steps(Stmt stmt) {
+    return count(stmt);
+  }
+
+  // Steps evaluating `expr` takes.
+  public static long steps(Expr expr) {
+    return count(expr);
+  }
+
+  private static long count(Object node) {
+    var count = 0L;
+    var pending = new ArrayDeque<Object>();
+    pending.push(node);
+
+    while (!pending.isEmpty()) {
+      count++;
+      switch (pending.pop()) {
+        case Stmt.Block block -> {
+        }
+        case Stmt.Expression expression -> pending.push(expression.expr());
+        case Stmt.Function function -> {
+        }
+        case Stmt.If ifStmt -> pending.push(ifStmt.condition());
+        case Stmt.Print print -> pending.push(print.expr());
+        case Stmt.Return returnStmt -> pending.push(returnStmt.value());
+        case Stmt.Var var -> pending.push(var.initializer());
+        case Expr.Assign assign -> pending.push(assign.value());
+        case Expr.Binary binary -> {
+          pending.push(binary.left());
+          pending.push(binary.right());
+        }
+        case Expr.Call call -> {
+          pending.push(call.callee());
+          call.arguments().forEach(pending::push);
+        }
+        case Expr.Grouping grouping -> {
+          count--;
+          pending.push(grouping.expr());
+        }
+        case Expr.Unary unary -> pending.push(unary.right());
+        case Expr.Literal literal -> count += literal.steps() - 1;
+        case Expr.Variable variable -> {
+        }
+        default -> throw new IllegalStateException();
+      }
+    }
+
+    return count;
+  }
+
+  // The allowance ran out: settle what it covered, then grant the next one.
+  private void check() {
+    steps += granted - allowance;
+    if (steps > maxSteps) {
+      throw new BudgetExceeded("Execution budget exceeded: more than " + maxSteps + " steps.");
+    }
+
+    if (maxNanos != Long.MAX_VALUE && System.nanoTime() - start > maxNanos) {
+      throw new BudgetExceeded("Execution budget exceeded: ran longer than " + maxNanos / 1_000_000 + " ms.");
+    }
+
+    granted = Math.min(CHECK_INTERVAL, maxSteps - steps);
+    allowance = granted;
+  }
+}
@@ -0,0 +1,5 @@
+package parser;
+
+public interface Engine {
+  void interpret(Iterable<Stmt> stmts);
+}
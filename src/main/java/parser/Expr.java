@@ -2,19 +2,39 @@ package parser;
 
 import lexer.Token;
 
-public sealed interface Expr permits Expr.Binary, Expr.Grouping, Expr.Literal, Expr.Unary {
+import java.util.List;
+
+public sealed interface Expr permits Expr.Assign, Expr.Binary, Expr.Call, Expr.Grouping, Expr.Literal, Expr.Unary, Expr.Variable {
   interface Visitor<R> {
+    R visitAssignExpr(Expr.Assign expr);
+
     R visitBinaryExpr(Expr.Binary expr);
 
+    R visitCallExpr(Expr.Call expr);
+
     R visitGroupingExpr(Expr.Grouping expr);
 
     R visitLiteralExpr(Expr.Literal expr);
 
     R visitUnaryExpr(Expr.Unary expr);
+
+    R visitVariableExpr(Expr.Variable expr);
   }
 
   <R> R accept(Visitor<R> visitor);
 
+  // `depth` and `slot` locate the variable as the Resolver bound it, see there.
+  record Assign(Token name, Expr value, int depth, int slot) implements Expr {
+    public Assign(Token name, Expr value) {
+      this(name, value, Resolver.UNRESOLVED, Resolver.UNRESOLVED);
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitAssignExpr(this);
+    }
+  }
+
   record Binary(Expr left, Expr right, Token operator) implements Expr {
     @Override
     public <R> R accept(Visitor<R> visitor) {
@@ -22,6 +42,14 @@ public sealed interface Expr permits Expr.Binary, Expr.Grouping, Expr.Literal, E
     }
   }
 
+  // `paren` is the closing parenthesis, runtime errors of the call report its line.
+  record Call(Expr callee, Token paren, List<Expr> arguments) implements Expr {
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitCallExpr(this);
+    }
+  }
+
   record Grouping(Expr expr) implements Expr {
     @Override
     public <R> R accept(Visitor<R> visitor) {
@@ -29,7 +57,12 @@ public sealed interface Expr permits Expr.Binary, Expr.Grouping, Expr.Literal, E
     }
   }
 
-  record Literal(Object literal) implements Expr {
+  // `steps` is what evaluating it charges the budget: 1, or what the expression it was folded from would have.
+  record Literal(Object literal, long steps) implements Expr {
+    public Literal(Object literal) {
+      this(literal, 1);
+    }
+
     @Override
     public <R> R accept(Visitor<R> visitor) {
       return visitor.visitLiteralExpr(this);
@@ -42,5 +75,15 @@ public sealed interface Expr permits Expr.Binary, Expr.Grouping, Expr.Literal, E
       return visitor.visitUnaryExpr(this);
     }
   }
-}
 
+  record Variable(Token name, int depth, int slot) implements Expr {
+    public Variable(Token name) {
+      this(name, Resolver.UNRESOLVED, Resolver.UNRESOLVED);
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitVariableExpr(this);
+    }
+  }
+}
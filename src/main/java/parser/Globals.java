@@ -0,0 +1,48 @@
+package parser;
+
+import errors.RuntimeError;
+
+import java.util.Arrays;
+
+/**
+ * The global variables of one run, indexed by the slots the {@link Resolver} assigned. A slot stays undefined, which
+ * is not nil, until a declaration of its variable runs.
+ */
+public final class Globals {
+  private static final Object UNDEFINED = new Object();
+
+  private Object[] values = new Object[0];
+
+  public Object get(int slot, String name, int line) {
+    var value = slot < values.length ? values[slot] : UNDEFINED;
+    if (value == UNDEFINED) {
+      throw undefined(name, line);
+    }
+
+    return value;
+  }
+
+  public void define(int slot, Object value) {
+    if (slot >= values.length) {
+      var length = values.length;
+      values = Arrays.copyOf(values, Math.max(slot + 1, length * 2));
+      Arrays.fill(values, length, values.length, UNDEFINED);
+    }
+
+    values[slot] = value;
+  }
+
+  // Returns `value`, an assignment is an expression.
+  public Object assign(int slot, Object value, String name, int line) {
+    if (slot >= values.length || values[slot] == UNDEFINED) {
+      throw undefined(name, line);
+    }
+
+    values[slot] = value;
+    return value;
+  }
+
+  private static RuntimeError undefined(String name, int line) {
+    return new RuntimeError("Undefined variable '" + name + "'.", line);
+  }
+}
@@ -3,41 +3,123 @@ package parser;
 import errors.Errors;
 import errors.RuntimeError;
 import lexer.Token;
+import output.OutputSink;
 
 import java.util.List;
 
-public class Interpreter implements Stmt.Visitor<Void>, Expr.Visitor<Object> {
-  private static Interpreter instance;
+/**
+ * Walks the tree. Executing a statement returns {@link #NORMAL} when it completed, or the value of the return
+ * statement that ended it: enclosing statements stop and pass the value on up to the call, so a return unwinds
+ * without an exception.
+ */
+public class Interpreter implements Engine, Stmt.Visitor<Object>, Expr.Visitor<Object> {
+  protected static final Object NORMAL = new Object();
 
-  private Interpreter() {}
+  private final OutputSink out;
+  private final Errors errors;
+  private final Budget budget;
+  private final Globals globals;
+  // Innermost frame of the blocks and call being executed, null at the top level. See Resolver for the layout.
+  private Object[] frame;
 
-  public static Interpreter getInstance() {
-    if (instance == null) {
-      instance = new Interpreter();
-    }
+  public Interpreter(OutputSink out, Errors errors) {
+    this(out, errors, Budget.unlimited());
+  }
 
-    return instance;
+  public Interpreter(OutputSink out, Errors errors, Budget budget) {
+    this(out, errors, budget, new Globals());
   }
 
-  public void interpret(List<Stmt> stmts) {
+  // Shares `globals` with another engine running the same program.
+  public Interpreter(OutputSink out, Errors errors, Budget budget, Globals globals) {
+    this.out = out;
+    this.errors = errors;
+    this.budget = budget;
+    this.globals = globals;
+  }
+
+  @Override
+  public void interpret(Iterable<Stmt> stmts) {
     try {
-      stmts.forEach(stmt -> stmt.accept(this));
+      for (var stmt : stmts) {
+        execute(stmt);
+      }
     } catch (RuntimeError error) {
-      Errors.reportError(error);
+      errors.reportError(error);
+    }
+  }
+
+  public Object execute(Stmt stmt) {
+    budget.step();
+    return stmt.accept(this);
+  }
+
+  @Override
+  public Object visitBlockStmt(Stmt.Block stmt) {
+    if (stmt.frameSize() == 0) {
+      return execute(stmt.stmts());
+    }
+
+    var enclosing = frame;
+    frame = new Object[stmt.frameSize()];
+    frame[0] = enclosing;
+
+    try {
+      return execute(stmt.stmts());
+    } finally {
+      frame = enclosing;
     }
   }
 
   @Override
-  public Void visitExpressionStmt(Stmt.Expression stmt) {
+  public Object visitExpressionStmt(Stmt.Expression stmt) {
     evaluate(stmt.expr());
-    return null;
+    return NORMAL;
+  }
+
+  @Override
+  public Object visitFunctionStmt(Stmt.Function stmt) {
+    declare(stmt.depth(), stmt.slot(), new TreeFunction(stmt, frame));
+    return NORMAL;
   }
 
   @Override
-  public Void visitPrintStmt(Stmt.Print stmt) {
+  public Object visitIfStmt(Stmt.If stmt) {
+    if (Values.isTruthy(evaluate(stmt.condition()))) {
+      return execute(stmt.thenBranch());
+    }
+
+    return stmt.elseBranch() == null ? NORMAL : execute(stmt.elseBranch());
+  }
+
+  @Override
+  public Object visitPrintStmt(Stmt.Print stmt) {
     var value = evaluate(stmt.expr());
-    System.out.println(stringify(value));
-    return null;
+    Values.println(out, value);
+    return NORMAL;
+  }
+
+  @Override
+  public Object visitReturnStmt(Stmt.Return stmt) {
+    return evaluate(stmt.value());
+  }
+
+  @Override
+  public Object visitVarStmt(Stmt.Var stmt) {
+    declare(stmt.depth(), stmt.slot(), evaluate(stmt.initializer()));
+    return NORMAL;
+  }
+
+  @Override
+  public Object visitAssignExpr(Expr.Assign expr) {
+    var value = evaluate(expr.value());
+
+    if (expr.depth() == Resolver.GLOBAL) {
+      return globals.assign(expr.slot(), value, expr.name().lexeme(), expr.name().line());
+    }
+
+    frame(expr.depth())[expr.slot()] = value;
+    return value;
   }
 
   @Override
@@ -51,11 +133,11 @@ public class Interpreter implements Stmt.Visitor<Void>, Expr.Visitor<Object> {
           yield d1 + d2;
         }
 
-        if (leftValue instanceof String d1 && rightValue instanceof String d2) {
-          yield d1 + d2;
+        if (leftValue instanceof CharSequence s1 && rightValue instanceof CharSequence s2) {
+          yield budget.concat(s1, s2);
         }
 
-        throw new RuntimeError("Operands must be two numbers or two strings.", expr.operator());
+        throw new RuntimeError(Values.OPERANDS_MUST_BE_NUMBERS_OR_STRINGS, expr.operator());
       }
       case Token.Type.MINUS -> {
         checkNumbers(expr.operator(), leftValue, rightValue);
@@ -69,8 +151,8 @@ public class Interpreter implements Stmt.Visitor<Void>, Expr.Visitor<Object> {
         checkNumbers(expr.operator(), leftValue, rightValue);
         yield (double) leftValue / (double) rightValue;
       }
-      case Token.Type.EQUAL_EQUAL -> equals(leftValue, rightValue);
-      case Token.Type.BANG_EQUAL -> !equals(leftValue, rightValue);
+      case Token.Type.EQUAL_EQUAL -> Values.isEqual(leftValue, rightValue);
+      case Token.Type.BANG_EQUAL -> !Values.isEqual(leftValue, rightValue);
       case Token.Type.LESS -> {
         checkNumbers(expr.operator(), leftValue, rightValue);
         yield (double) leftValue < (double) rightValue;
@@ -87,19 +169,46 @@ public class Interpreter implements Stmt.Visitor<Void>, Expr.Visitor<Object> {
         checkNumbers(expr.operator(), leftValue, rightValue);
         yield (double) leftValue >= (double) rightValue;
       }
-      case Token.Type.AND -> isTruthy(leftValue) && isTruthy(rightValue);
-      case Token.Type.OR -> isTruthy(leftValue) || isTruthy(rightValue);
+      case Token.Type.AND -> Values.isTruthy(leftValue) && Values.isTruthy(rightValue);
+      case Token.Type.OR -> Values.isTruthy(leftValue) || Values.isTruthy(rightValue);
       default -> null;
     };
   }
 
+  @Override
+  public Object visitCallExpr(Expr.Call expr) {
+    var callee = evaluate(expr.callee());
+    var arguments = expr.arguments();
+
+    if (callee instanceof LoxFunction function && function.arity() == arguments.size()) {
+      var frame = function.frame();
+      for (var i = 0; i < arguments.size(); i++) {
+        frame[i + 1] = evaluate(arguments.get(i));
+      }
+
+      return function.call(frame, expr.paren().line());
+    }
+
+    // Still evaluated first, their errors come before the call's.
+    for (var argument : arguments) {
+      evaluate(argument);
+    }
+
+    throw LoxFunction.callError(callee, arguments.size(), expr.paren().line());
+  }
+
   @Override
   public Object visitGroupingExpr(Expr.Grouping expr) {
-    return evaluate(expr.expr());
+    // Parentheses take no step: the one charged for the grouping pays for its expression.
+    return expr.expr().accept(this);
   }
 
   @Override
   public Object visitLiteralExpr(Expr.Literal expr) {
+    if (expr.steps() > 1) {
+      budget.charge(expr.steps() - 1);
+    }
+
     return expr.literal();
   }
 
@@ -112,53 +221,82 @@ public class Interpreter implements Stmt.Visitor<Void>, Expr.Visitor<Object> {
         checkNumbers(expr.operator(), rightValue);
         yield -(double) rightValue;
       }
-      case Token.Type.BANG -> !isTruthy(rightValue);
+      case Token.Type.BANG -> !Values.isTruthy(rightValue);
       default -> null;
     };
   }
 
-  private Object evaluate(Expr expr) {
+  @Override
+  public Object visitVariableExpr(Expr.Variable expr) {
+    if (expr.depth() == Resolver.GLOBAL) {
+      return globals.get(expr.slot(), expr.name().lexeme(), expr.name().line());
+    }
+
+    return frame(expr.depth())[expr.slot()];
+  }
+
+  public Object evaluate(Expr expr) {
+    budget.step();
     return expr.accept(this);
   }
 
-  private void checkNumbers(Token operator, Object... objects) {
-    for (Object o : objects) {
-      if (!(o instanceof Double)) {
-        throw new RuntimeError(String.format(
-          "Operand%s must be%s number%s.",
-          objects.length > 1 ? "s" : "",
-          objects.length > 1 ? " a" : "",
-          objects.length > 1 ? "s" : ""
-        ), operator);
+  // Runs statements until one returns.
+  private Object execute(List<Stmt> stmts) {
+    for (var stmt : stmts) {
+      var completion = execute(stmt);
+      if (completion != NORMAL) {
+        return completion;
       }
     }
+
+    return NORMAL;
   }
 
-  private boolean isTruthy(Object value) {
-    return switch (value) {
-      case Boolean booleanValue -> booleanValue;
-      case null -> false;
-      default -> true;
-    };
+  private void declare(int depth, int slot, Object value) {
+    if (depth == Resolver.GLOBAL) {
+      globals.define(slot, value);
+    } else {
+      frame[slot] = value;
+    }
   }
 
-  private boolean equals(Object value1, Object value2) {
-    if (value1 == null && value2 == null) {
-      return true;
+  private Object[] frame(int depth) {
+    var frame = this.frame;
+    for (var i = 0; i < depth; i++) {
+      frame = (Object[]) frame[0];
     }
 
-    if (value1 == null) {
-      return false;
+    return frame;
+  }
+
+  // A function declared to this interpreter, its body runs here whichever engine calls it.
+  private final class TreeFunction extends LoxFunction {
+    private final List<Stmt> body;
+
+    private TreeFunction(Stmt.Function declaration, Object[] closure) {
+      super(declaration.name().lexeme(), declaration.params().size(), declaration.frameSize(), closure);
+      this.body = declaration.body();
     }
 
-    return value1.equals(value2);
+    @Override
+    public Object call(Object[] frame) {
+      var caller = Interpreter.this.frame;
+      Interpreter.this.frame = frame;
+
+      try {
+        var completion = execute(body);
+        return completion == NORMAL ? null : completion;
+      } finally {
+        Interpreter.this.frame = caller;
+      }
+    }
   }
 
-  private static String stringify(Object value) {
-    return switch (value) {
-      case null -> "nil";
-      case Double dv when Math.floor(dv) == dv -> dv.longValue() + "";
-      default -> value.toString();
-    };
+  private void checkNumbers(Token operator, Object... objects) {
+    for (Object o : objects) {
+      if (!(o instanceof Double)) {
+        throw new RuntimeError(objects.length > 1 ? Values.OPERANDS_MUST_BE_NUMBERS : Values.OPERAND_MUST_BE_NUMBER, operator);
+      }
+    }
   }
 }
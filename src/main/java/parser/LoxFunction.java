@@ -0,0 +1,65 @@
+package parser;
+
+import errors.RuntimeError;
+
+/**
+ * A function value. A call runs the body in a frame of its own, laid out as {@link Resolver} describes: slot 0 links
+ * to the frame the function was declared in, its closure, the arguments follow from slot 1 on, then the variables the
+ * body declares. The size is fixed when the declaration is resolved, so a call allocates that one array and the
+ * caller stores the arguments straight into it.
+ * <p>
+ * Each engine subclasses this with its own form of the body. Any function can be called from any engine, engines
+ * sharing {@link Globals} call each other's.
+ */
+public abstract class LoxFunction {
+  private final String name;
+  private final int arity;
+  private final int frameSize;
+  private final Object[] closure;
+
+  protected LoxFunction(String name, int arity, int frameSize, Object[] closure) {
+    this.name = name;
+    this.arity = arity;
+    this.frameSize = frameSize;
+    this.closure = closure;
+  }
+
+  public final int arity() {
+    return arity;
+  }
+
+  // A frame for one call, the caller stores the arguments.
+  public final Object[] frame() {
+    var frame = new Object[frameSize];
+    frame[0] = closure;
+    return frame;
+  }
+
+  /**
+   * Runs the body in `frame`, returns the value it returned, nil when it ran off its end.
+   */
+  public abstract Object call(Object[] frame);
+
+  // Calls at `line`, where running out of Java stack is reported like any Lox runtime error.
+  public final Object call(Object[] frame, int line) {
+    try {
+      return call(frame);
+    } catch (StackOverflowError e) {
+      throw new RuntimeError(Values.STACK_OVERFLOW, line);
+    }
+  }
+
+  // The error for calling `callee` with `count` arguments when it is not a function taking that many.
+  public static RuntimeError callError(Object callee, int count, int line) {
+    if (!(callee instanceof LoxFunction function)) {
+      return new RuntimeError(Values.CAN_ONLY_CALL, line);
+    }
+
+    return new RuntimeError("Expected " + function.arity + " arguments but got " + count + ".", line);
+  }
+
+  @Override
+  public String toString() {
+    return "<fn " + name + ">";
+  }
+}
@@ -0,0 +1,102 @@
+package parser;
+
+import errors.Errors;
+import lexer.Token;
+import lexer.TokenBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses the top-level statements of a {@link TokenBuffer} concurrently. The tokens are cut into ranges after a
+ * {@code ;} outside any parentheses or braces and not followed by {@code else}, which always ends a statement that
+ * parsed, and each range is parsed on a {@link ForkJoinPool} with its errors held back. The statements are stitched
+ * back in order up to the first range that failed. From there on the sequential {@link Parser} takes over, error
+ * recovery can resynchronize anywhere, so only it reports the same errors.
+ */
+public class ParallelParser {
+  private static final int MIN_RANGE_SIZE = 1 << 12;
+
+  private final TokenBuffer tokens;
+  private final Errors errors;
+  private final int rangeSize;
+
+  public ParallelParser(TokenBuffer tokens, Errors errors) {
+    this(tokens, errors, Math.max(MIN_RANGE_SIZE, tokens.size() / (4 * ForkJoinPool.getCommonPoolParallelism())));
+  }
+
+  public ParallelParser(TokenBuffer tokens, Errors errors, int rangeSize) {
+    this.tokens = tokens;
+    this.errors = errors;
+    this.rangeSize = rangeSize;
+  }
+
+  private record Range(int start, List<Stmt> stmts, boolean failed) {
+  }
+
+  public List<Stmt> parse() {
+    var tasks = new ArrayList<ForkJoinTask<Range>>();
+    var eof = tokens.size() - 1;
+    var start = 0;
+    var depth = 0;
+
+    for (var i = 0; i < eof; i++) {
+      switch (tokens.type(i)) {
+        case Token.Type.LEFT_PAREN, Token.Type.LEFT_BRACE -> depth++;
+        case Token.Type.RIGHT_PAREN, Token.Type.RIGHT_BRACE -> depth--;
+        case Token.Type.SEMICOLON -> {
+          if (depth == 0 && i + 1 - start >= rangeSize && tokens.type(i + 1) != Token.Type.ELSE) {
+            tasks.add(submit(start, i + 1));
+            start = i + 1;
+          }
+        }
+        default -> {
+        }
+      }
+    }
+
+    if (start < eof) {
+      tasks.add(submit(start, eof));
+    }
+
+    var stmts = new ArrayList<Stmt>();
+
+    for (var task : tasks) {
+      var range = task.join();
+
+      if (range.failed()) {
+        tasks.forEach(remaining -> remaining.cancel(false));
+        stmts.addAll(new Parser(tokens.cursor(range.start()), errors).parse().getStmts());
+        break;
+      }
+
+      stmts.addAll(range.stmts());
+    }
+
+    return stmts;
+  }
+
+  private ForkJoinTask<Range> submit(int start, int end) {
+    return ForkJoinPool.commonPool().submit(() -> parseRange(start, end));
+  }
+
+  private Range parseRange(int start, int end) {
+    var cursor = tokens.cursor(start);
+    // A failed range is parsed again, reporting its errors.
+    var parser = new Parser(cursor, error -> {});
+
+    var stmts = new ArrayList<Stmt>();
+    while (cursor.position() < end) {
+      var stmt = parser.parseNext();
+      if (stmt == null) {
+        return new Range(start, stmts, true);
+      }
+
+      stmts.add(stmt);
+    }
+
+    return new Range(start, stmts, false);
+  }
+}
@@ -3,49 +3,269 @@ package parser;
 import errors.Errors;
 import errors.StaticError;
 import lexer.Token;
+import lexer.TokenStream;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 public class Parser {
-  private final List<Token> tokens;
-  private int current = 0;
+  // Binding power of each token type as an infix operator, indexed by ordinal; 0 for tokens that are not one.
+  private static final int EQUALITY = 1;
+  private static final int COMPARISON = 2;
+  private static final int TERM = 3;
+  private static final int FACTOR = 4;
+  private static final byte[] INFIX = new byte[Token.Type.values().length];
+  // Parameters and arguments of a call, the bytecode VM encodes the count in a byte.
+  private static final int MAX_ARGUMENTS = 255;
+
+  static {
+    infix(EQUALITY, Token.Type.BANG_EQUAL, Token.Type.EQUAL_EQUAL);
+    infix(COMPARISON, Token.Type.GREATER, Token.Type.GREATER_EQUAL, Token.Type.LESS, Token.Type.LESS_EQUAL);
+    infix(TERM, Token.Type.MINUS, Token.Type.PLUS);
+    infix(FACTOR, Token.Type.SLASH, Token.Type.STAR);
+  }
+
+  private final TokenStream tokens;
+  private boolean failed = false;
 
   private final List<Stmt> stmts = new ArrayList<>();
+  private final Consumer<StaticError> errors;
+
+  // Unwinds to the statement being parsed once its syntax error is reported. It carries nothing, so one instance
+  // without a stack trace does.
+  private static final class ParseError extends RuntimeException {
+    private static final ParseError INSTANCE = new ParseError();
+
+    private ParseError() {
+      super(null, null, false, false);
+    }
+  }
+
+  public Parser(List<Token> tokens, Errors errors) {
+    this(TokenStream.of(tokens), errors);
+  }
+
+  public Parser(TokenStream tokens, Errors errors) {
+    this(tokens, errors::reportError);
+  }
 
-  public Parser(List<Token> tokens) {
+  // Hands syntax errors to `errors` instead of reporting them.
+  Parser(TokenStream tokens, Consumer<StaticError> errors) {
     this.tokens = tokens;
+    this.errors = errors;
   }
 
   public List<Stmt> getStmts() {
     return stmts;
   }
 
+  /**
+   * Parses the statements up to the first syntax error, then goes on checking the rest so that every syntax error
+   * is reported in one pass.
+   */
   public Parser parse() {
+    Stmt stmt;
+    while ((stmt = parseNext()) != null) {
+      stmts.add(stmt);
+    }
+
+    recover();
+    return this;
+  }
+
+  /**
+   * Parses the next top-level statement, returns null at the end of the input or once a syntax error was reported.
+   */
+  public Stmt parseNext() {
+    if (failed || atEOF()) {
+      return null;
+    }
+
     try {
-      while (!atEOF()) {
-        stmts.add(stmt());
+      return stmt();
+    } catch (ParseError ignored) {
+      failed = true;
+      synchronize();
+      return null;
+    }
+  }
+
+  /**
+   * Lazily parses top-level statements as they are iterated, without keeping them around.
+   */
+  public Iterable<Stmt> stream() {
+    return () -> new Iterator<>() {
+      private Stmt next;
+
+      @Override
+      public boolean hasNext() {
+        if (next == null) {
+          next = parseNext();
+        }
+
+        return next != null;
+      }
+
+      @Override
+      public Stmt next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+
+        var stmt = next;
+        next = null;
+        return stmt;
       }
-    } catch (RuntimeException ignored) {
+    };
+  }
+
+  /**
+   * Consumes the rest of the input so that every remaining lexical and syntax error gets reported.
+   */
+  public void drain() {
+    while (parseNext() != null) {
+      // Discard, only the reported errors matter.
     }
 
-    return this;
+    recover();
   }
 
   public Expr parseExpr() {
     try {
       return expression();
-    } catch (RuntimeException ignored) {
+    } catch (ParseError ignored) {
       return null;
     }
   }
 
+  // Past the first syntax error statements are only parsed for their errors, resynchronizing after each one.
+  private void recover() {
+    while (failed && !atEOF()) {
+      try {
+        stmt();
+      } catch (ParseError ignored) {
+        synchronize();
+      }
+    }
+  }
+
+  // Panic mode: skips to where the next statement likely starts, after a ';' or at a keyword that starts one. The
+  // failed statement consumed at least its first token, so recovering always makes progress.
+  private void synchronize() {
+    while (!atEOF()) {
+      switch (tokens.peekType()) {
+        case Token.Type.SEMICOLON -> {
+          tokens.skip();
+          return;
+        }
+        case Token.Type.CLASS, Token.Type.FUN, Token.Type.VAR, Token.Type.FOR, Token.Type.IF, Token.Type.WHILE,
+             Token.Type.PRINT, Token.Type.RETURN -> {
+          return;
+        }
+        default -> tokens.skip();
+      }
+    }
+  }
+
   private Stmt stmt() {
-    if (match(Token.Type.PRINT)) {
-      return printStmt();
+    return switch (tokens.peekType()) {
+      case Token.Type.VAR -> varDeclaration();
+      case Token.Type.FUN -> function();
+      default -> statement();
+    };
+  }
+
+  // A statement that declares nothing where it stands, as the branches of an if are: a declaration there would have
+  // no block to size its frame.
+  private Stmt statement() {
+    return switch (tokens.peekType()) {
+      case Token.Type.LEFT_BRACE -> new Stmt.Block(block());
+      case Token.Type.IF -> ifStmt();
+      case Token.Type.PRINT -> printStmt();
+      case Token.Type.RETURN -> returnStmt();
+      default -> expressionStmt();
+    };
+  }
+
+  private Stmt varDeclaration() {
+    tokens.skip();
+    if (!match(Token.Type.IDENTIFIER)) {
+      throw error(peek(), "Expect variable name.");
+    }
+
+    var name = poll();
+    var initializer = match(Token.Type.EQUAL) ? initializer() : new Expr.Literal(null);
+    pollOrError(Token.Type.SEMICOLON, "Expect ';' after variable declaration.");
+    return new Stmt.Var(name, initializer);
+  }
+
+  private Expr initializer() {
+    tokens.skip();
+    return expression();
+  }
+
+  private Stmt function() {
+    tokens.skip();
+    if (!match(Token.Type.IDENTIFIER)) {
+      throw error(peek(), "Expect function name.");
+    }
+
+    var name = poll();
+    pollOrError(Token.Type.LEFT_PAREN, "Expect '(' after function name.");
+    var params = new ArrayList<Token>();
+
+    if (!match(Token.Type.RIGHT_PAREN)) {
+      do {
+        if (params.size() == MAX_ARGUMENTS) {
+          throw error(peek(), "Can't have more than " + MAX_ARGUMENTS + " parameters.");
+        }
+
+        if (!match(Token.Type.IDENTIFIER)) {
+          throw error(peek(), "Expect parameter name.");
+        }
+
+        params.add(poll());
+      } while (skipComma());
+    }
+
+    pollOrError(Token.Type.RIGHT_PAREN, "Expect ')' after parameters.");
+    if (!match(Token.Type.LEFT_BRACE)) {
+      throw error(peek(), "Expect '{' before function body.");
+    }
+
+    return new Stmt.Function(name, params, block());
+  }
+
+  // The statements between braces, the opening one is next.
+  private List<Stmt> block() {
+    tokens.skip();
+    var stmts = new ArrayList<Stmt>();
+
+    while (!match(Token.Type.RIGHT_BRACE) && !atEOF()) {
+      stmts.add(stmt());
     }
 
-    return expressionStmt();
+    pollOrError(Token.Type.RIGHT_BRACE, "Expect '}' after block.");
+    return stmts;
+  }
+
+  private Stmt ifStmt() {
+    tokens.skip();
+    pollOrError(Token.Type.LEFT_PAREN, "Expect '(' after 'if'.");
+    var condition = expression();
+    pollOrError(Token.Type.RIGHT_PAREN, "Expect ')' after if condition.");
+
+    var thenBranch = statement();
+    Stmt elseBranch = null;
+    if (match(Token.Type.ELSE)) {
+      tokens.skip();
+      elseBranch = statement();
+    }
+
+    return new Stmt.If(condition, thenBranch, elseBranch);
   }
 
   private Stmt expressionStmt() {
@@ -55,138 +275,166 @@ public class Parser {
   }
 
   private Stmt printStmt() {
-    poll();
+    tokens.skip();
     var expr = expression();
     pollOrError(Token.Type.SEMICOLON, "Expect ';' after expression.");
     return new Stmt.Print(expr);
   }
 
+  private Stmt returnStmt() {
+    var keyword = poll();
+    var value = match(Token.Type.SEMICOLON) ? new Expr.Literal(null) : expression();
+    pollOrError(Token.Type.SEMICOLON, "Expect ';' after return value.");
+    return new Stmt.Return(keyword, value);
+  }
+
   private Expr expression() {
-    return equality();
+    return assignment();
   }
 
-  private Expr equality() {
-    var expr = comparison();
+  // Assignment is right-associative and its target parses as an ordinary expression first, the `=` after it tells.
+  private Expr assignment() {
+    var expr = binary(EQUALITY);
 
-    while (match(Token.Type.BANG_EQUAL, Token.Type.EQUAL_EQUAL)) {
-      var operator = poll();
-      var right = comparison();
-      expr = new Expr.Binary(expr, right, operator);
+    if (!match(Token.Type.EQUAL)) {
+      return expr;
     }
 
-    return expr;
-  }
+    var equals = poll();
+    var value = assignment();
 
-  private Expr comparison() {
-    var expr = term();
-
-    while (match(Token.Type.GREATER, Token.Type.GREATER_EQUAL, Token.Type.LESS, Token.Type.LESS_EQUAL)) {
-      var operator = poll();
-      var right = term();
-      expr = new Expr.Binary(expr, right, operator);
+    if (expr instanceof Expr.Variable variable) {
+      return new Expr.Assign(variable.name(), value);
     }
 
-    return expr;
+    throw error(equals, "Invalid assignment target.");
   }
 
-  private Expr term() {
-    var expr = factor();
+  // Precedence climbing: a prefix expression, then every infix operator binding at least as tight as `precedence`.
+  // Operands on the right only take tighter operators, so all binary operators associate to the left.
+  private Expr binary(int precedence) {
+    var expr = prefix();
+
+    while (true) {
+      var type = tokens.peekType();
+      var operatorPrecedence = INFIX[type.ordinal()];
+      if (operatorPrecedence < precedence) {
+        return expr;
+      }
 
-    while (match(Token.Type.MINUS, Token.Type.PLUS)) {
       var operator = poll();
-      var right = factor();
+      var right = binary(operatorPrecedence + 1);
       expr = new Expr.Binary(expr, right, operator);
     }
+  }
 
-    return expr;
+  private Expr prefix() {
+    return switch (tokens.peekType()) {
+      case Token.Type.BANG, Token.Type.MINUS -> {
+        var operator = poll();
+        var right = prefix();
+        yield new Expr.Unary(right, operator);
+      }
+      default -> call();
+    };
   }
 
-  private Expr factor() {
-    var expr = unary();
+  // A primary expression followed by any number of argument lists.
+  private Expr call() {
+    var expr = primary();
 
-    while (match(Token.Type.SLASH, Token.Type.STAR)) {
-      var operator = poll();
-      var right = unary();
-      expr = new Expr.Binary(expr, right, operator);
-    }
+    while (match(Token.Type.LEFT_PAREN)) {
+      tokens.skip();
+      var arguments = new ArrayList<Expr>();
 
-    return expr;
-  }
+      if (!match(Token.Type.RIGHT_PAREN)) {
+        do {
+          if (arguments.size() == MAX_ARGUMENTS) {
+            throw error(peek(), "Can't have more than " + MAX_ARGUMENTS + " arguments.");
+          }
 
-  private Expr unary() {
-    if (match(Token.Type.BANG, Token.Type.MINUS)) {
-      var operator = poll();
-      var right = unary();
-      return new Expr.Unary(right, operator);
+          arguments.add(expression());
+        } while (skipComma());
+      }
+
+      if (!match(Token.Type.RIGHT_PAREN)) {
+        throw error(peek(), "Expect ')' after arguments.");
+      }
+
+      expr = new Expr.Call(expr, poll(), arguments);
     }
 
-    return primary();
+    return expr;
   }
 
   private Expr primary() {
-    var currentToken = poll();
-
-    return switch (currentToken.type()) {
-      case Token.Type.NUMBER, Token.Type.STRING -> new Expr.Literal(currentToken.literal());
-      case Token.Type.TRUE -> new Expr.Literal(true);
-      case Token.Type.FALSE -> new Expr.Literal(false);
-      case Token.Type.NIL -> new Expr.Literal(null);
+    return switch (tokens.peekType()) {
+      case Token.Type.NUMBER, Token.Type.STRING -> new Expr.Literal(tokens.pollLiteral());
+      case Token.Type.TRUE -> literal(true);
+      case Token.Type.FALSE -> literal(false);
+      case Token.Type.NIL -> literal(null);
+      case Token.Type.IDENTIFIER -> new Expr.Variable(poll());
       case Token.Type.LEFT_PAREN -> {
+        tokens.skip();
         var expr = expression();
 
         pollOrError(Token.Type.RIGHT_PAREN, "Expect ')' after expression.");
 
         yield new Expr.Grouping(expr);
       }
-      default -> throw error(currentToken, "Expect expression.");
+      default -> throw error(poll(), "Expect expression.");
     };
   }
 
+  private Expr literal(Object value) {
+    tokens.skip();
+    return new Expr.Literal(value);
+  }
+
   private void pollOrError(Token.Type type, String errorMessage) {
     if (match(type)) {
-      poll();
+      tokens.skip();
       return;
     }
 
     throw error(peek(), errorMessage);
   }
 
-  private RuntimeException error(Token token, String errorMessage) {
-    var message = String.format(
-      "line[%d] Error at %s: %s",
-      token.line(),
-      token.type().equals(Token.Type.EOF) ? "end" : "'" + token.lexeme() + "'",
-      errorMessage
-    );
-    Errors.reportError(new StaticError(message));
+  private ParseError error(Token token, String errorMessage) {
+    var where = token.type() == Token.Type.EOF ? "end" : "'" + token.lexeme() + "'";
+    errors.accept(new StaticError("line[" + token.line() + "] Error at " + where + ": " + errorMessage));
 
-    return new RuntimeException();
+    return ParseError.INSTANCE;
+  }
+
+  private static void infix(int precedence, Token.Type... types) {
+    for (var type : types) {
+      INFIX[type.ordinal()] = (byte) precedence;
+    }
   }
 
   private boolean atEOF() {
-    return current >= tokens.size() || tokens.get(current).type().equals(Token.Type.EOF);
+    return tokens.peekType().equals(Token.Type.EOF);
   }
 
   private Token poll() {
-    return tokens.get(current++);
+    return tokens.poll();
   }
 
   private Token peek() {
-    return tokens.get(current);
+    return tokens.peek();
   }
 
-  private boolean match(Token.Type... types) {
-    if (atEOF()) {
+  private boolean skipComma() {
+    if (!match(Token.Type.COMMA)) {
       return false;
     }
 
-    var currentType = tokens.get(current).type();
-    for (var type : types) {
-      if (currentType == type) {
-        return true;
-      }
-    }
+    tokens.skip();
+    return true;
+  }
 
-    return false;
+  private boolean match(Token.Type type) {
+    return tokens.peekType() == type && type != Token.Type.EOF;
   }
 }
@@ -0,0 +1,323 @@
+package parser;
+
+import errors.Errors;
+import errors.StaticError;
+import lexer.Token;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Binds every variable to where it lives at runtime, so engines index arrays instead of looking names up.
+ * <p>
+ * A block that declares variables runs in a frame of its own, an {@code Object[]} whose slot 0 links to the
+ * enclosing frame and whose slots from 1 on hold its variables in declaration order. A local is then {@code (depth,
+ * slot)}: how many links to follow from the innermost frame, and the index in the frame reached. Blocks declaring
+ * nothing get no frame and don't count towards depths. Top-level variables are {@link #GLOBAL}, their slot indexes
+ * the run's {@link Globals}; a name not declared in any block is taken to be global, declared or not, since global
+ * declarations only take effect when they run.
+ * <p>
+ * A function body always runs in a frame of its own, see {@link LoxFunction}: slot 0 links to the frame the function
+ * was declared in, the parameters come next, then the variables the body declares outside nested blocks. A function
+ * declaration declares its name like a var statement does, before the body is resolved so that it can call itself.
+ * <p>
+ * Resolved statements are rebuilt with their locations, one top-level statement at a time, so global slots stay the
+ * same across everything resolved by one instance.
+ */
+public class Resolver implements Stmt.Visitor<Stmt> {
+  public static final int GLOBAL = -1;
+  public static final int UNRESOLVED = -2;
+
+  private final Errors errors;
+  private final Map<String, Integer> globals = new HashMap<>();
+  // Innermost last, only blocks that have a frame.
+  private final List<Scope> scopes = new ArrayList<>();
+  // Function bodies being resolved, a return outside any is an error.
+  private int functions;
+  private boolean failed = false;
+
+  // The slots of one frame by name. `initializing` is the variable whose initializer is being resolved, which can't
+  // read it yet.
+  private static final class Scope {
+    private final Map<String, Integer> slots = new HashMap<>();
+    private int declared;
+    private String initializing;
+  }
+
+  public Resolver(Errors errors) {
+    this.errors = errors;
+  }
+
+  public Stmt resolve(Stmt stmt) {
+    return stmt.accept(this);
+  }
+
+  /**
+   * Resolves {@code expr} with explicit stacks, expressions can be deeper than the call stack allows. Operands are resolved
+   * left to right before the node using them, and subtrees that resolve to themselves are returned as they are.
+   */
+  public Expr resolve(Expr expr) {
+    // Expressions to resolve, and Rebuild markers for nodes whose operands are on `resolved`, last operand on top.
+    var pending = new ArrayDeque<Object>();
+    var resolved = new ArrayDeque<Expr>();
+    pending.push(expr);
+
+    while (!pending.isEmpty()) {
+      switch (pending.pop()) {
+        case Rebuild rebuild -> resolved.push(rebuild(rebuild.expr(), resolved));
+        case Expr.Literal literal -> resolved.push(literal);
+        case Expr.Variable variable -> resolved.push(variable(variable));
+        case Expr next -> {
+          pending.push(new Rebuild(next));
+          switch (next) {
+            case Expr.Assign assign -> pending.push(assign.value());
+            case Expr.Binary binary -> {
+              pending.push(binary.right());
+              pending.push(binary.left());
+            }
+            case Expr.Call call -> {
+              for (var i = call.arguments().size() - 1; i >= 0; i--) {
+                pending.push(call.arguments().get(i));
+              }
+              pending.push(call.callee());
+            }
+            case Expr.Grouping grouping -> pending.push(grouping.expr());
+            case Expr.Unary unary -> pending.push(unary.right());
+            default -> throw new IllegalStateException("Unexpected expression: " + next);
+          }
+        }
+        default -> throw new IllegalStateException();
+      }
+    }
+
+    return resolved.pop();
+  }
+
+  /**
+   * Lazily resolves statements as they are iterated. Like the parser, statements stop at the first one with an
+   * error, the rest are only checked so that every error gets reported.
+   */
+  public Iterable<Stmt> resolve(Iterable<Stmt> stmts) {
+    return () -> new Iterator<>() {
+      private final Iterator<Stmt> source = stmts.iterator();
+      private Stmt next;
+
+      @Override
+      public boolean hasNext() {
+        if (next == null && !failed && source.hasNext()) {
+          next = resolve(source.next());
+
+          if (failed) {
+            next = null;
+            source.forEachRemaining(Resolver.this::resolve);
+          }
+        }
+
+        return next != null;
+      }
+
+      @Override
+      public Stmt next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+
+        var stmt = next;
+        next = null;
+        return stmt;
+      }
+    };
+  }
+
+  @Override
+  public Stmt visitBlockStmt(Stmt.Block stmt) {
+    var declarations = 0;
+    for (var inner : stmt.stmts()) {
+      if (inner instanceof Stmt.Var || inner instanceof Stmt.Function) {
+        declarations++;
+      }
+    }
+
+    if (declarations > 0) {
+      scopes.add(new Scope());
+    }
+
+    var stmts = resolveAll(stmt.stmts());
+
+    if (declarations > 0) {
+      scopes.removeLast();
+    }
+
+    return new Stmt.Block(stmts, declarations > 0 ? declarations + 1 : 0);
+  }
+
+  @Override
+  public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+    var expr = resolve(stmt.expr());
+    return expr == stmt.expr() ? stmt : new Stmt.Expression(expr);
+  }
+
+  @Override
+  public Stmt visitFunctionStmt(Stmt.Function stmt) {
+    var depth = scopes.isEmpty() ? GLOBAL : 0;
+    var slot = declare(stmt.name());
+
+    var scope = new Scope();
+    scopes.add(scope);
+    functions++;
+
+    for (var param : stmt.params()) {
+      declare(param);
+    }
+
+    var body = resolveAll(stmt.body());
+
+    functions--;
+    scopes.removeLast();
+
+    return new Stmt.Function(stmt.name(), stmt.params(), body, depth, slot, scope.declared + 1);
+  }
+
+  @Override
+  public Stmt visitIfStmt(Stmt.If stmt) {
+    var condition = resolve(stmt.condition());
+    var thenBranch = resolve(stmt.thenBranch());
+    var elseBranch = stmt.elseBranch() == null ? null : resolve(stmt.elseBranch());
+    return new Stmt.If(condition, thenBranch, elseBranch);
+  }
+
+  @Override
+  public Stmt visitPrintStmt(Stmt.Print stmt) {
+    var expr = resolve(stmt.expr());
+    return expr == stmt.expr() ? stmt : new Stmt.Print(expr);
+  }
+
+  @Override
+  public Stmt visitReturnStmt(Stmt.Return stmt) {
+    if (functions == 0) {
+      error(stmt.keyword(), "Can't return from top-level code.");
+    }
+
+    var value = resolve(stmt.value());
+    return value == stmt.value() ? stmt : new Stmt.Return(stmt.keyword(), value);
+  }
+
+  @Override
+  public Stmt visitVarStmt(Stmt.Var stmt) {
+    if (scopes.isEmpty()) {
+      return new Stmt.Var(stmt.name(), resolve(stmt.initializer()), GLOBAL, global(stmt.name().lexeme()));
+    }
+
+    var scope = scopes.getLast();
+    var slot = declare(stmt.name());
+    scope.initializing = stmt.name().lexeme();
+    var initializer = resolve(stmt.initializer());
+    scope.initializing = null;
+
+    return new Stmt.Var(stmt.name(), initializer, 0, slot);
+  }
+
+  private record Rebuild(Expr expr) {
+  }
+
+  // Rebuilds `expr` from its resolved operands, popping them off `resolved`.
+  private Expr rebuild(Expr expr, ArrayDeque<Expr> resolved) {
+    return switch (expr) {
+      case Expr.Assign assign -> {
+        var value = resolved.pop();
+        var name = assign.name().lexeme();
+        var depth = depthOf(name);
+        yield new Expr.Assign(assign.name(), value, depth, slotOf(name, depth));
+      }
+      case Expr.Binary binary -> {
+        var right = resolved.pop();
+        var left = resolved.pop();
+        yield left == binary.left() && right == binary.right() ? binary : new Expr.Binary(left, right, binary.operator());
+      }
+      case Expr.Call call -> {
+        var arguments = new Expr[call.arguments().size()];
+        var same = true;
+        for (var i = arguments.length - 1; i >= 0; i--) {
+          arguments[i] = resolved.pop();
+          same &= arguments[i] == call.arguments().get(i);
+        }
+        var callee = resolved.pop();
+        yield same && callee == call.callee() ? call : new Expr.Call(callee, call.paren(), List.of(arguments));
+      }
+      case Expr.Grouping grouping -> {
+        var inner = resolved.pop();
+        yield inner == grouping.expr() ? grouping : new Expr.Grouping(inner);
+      }
+      case Expr.Unary unary -> {
+        var right = resolved.pop();
+        yield right == unary.right() ? unary : new Expr.Unary(right, unary.operator());
+      }
+      default -> throw new IllegalStateException("Unexpected expression: " + expr);
+    };
+  }
+
+  private Expr variable(Expr.Variable expr) {
+    var name = expr.name().lexeme();
+
+    if (!scopes.isEmpty() && name.equals(scopes.getLast().initializing)) {
+      error(expr.name(), "Can't read local variable in its own initializer.");
+    }
+
+    var depth = depthOf(name);
+    return new Expr.Variable(expr.name(), depth, slotOf(name, depth));
+  }
+
+  private List<Stmt> resolveAll(List<Stmt> stmts) {
+    var resolved = new ArrayList<Stmt>(stmts.size());
+    for (var stmt : stmts) {
+      resolved.add(resolve(stmt));
+    }
+
+    return resolved;
+  }
+
+  // Gives `name` the next slot of the innermost frame, or its global slot at the top level.
+  private int declare(Token name) {
+    if (scopes.isEmpty()) {
+      return global(name.lexeme());
+    }
+
+    var scope = scopes.getLast();
+    if (scope.slots.containsKey(name.lexeme())) {
+      error(name, "Already a variable with this name in this scope.");
+    }
+
+    var slot = ++scope.declared;
+    scope.slots.put(name.lexeme(), slot);
+    return slot;
+  }
+
+  // Links from the innermost frame to the one declaring `name`, GLOBAL when no enclosing block does.
+  private int depthOf(String name) {
+    for (var depth = 0; depth < scopes.size(); depth++) {
+      if (scopes.get(scopes.size() - 1 - depth).slots.containsKey(name)) {
+        return depth;
+      }
+    }
+
+    return GLOBAL;
+  }
+
+  private int slotOf(String name, int depth) {
+    return depth == GLOBAL ? global(name) : scopes.get(scopes.size() - 1 - depth).slots.get(name);
+  }
+
+  private int global(String name) {
+    return globals.computeIfAbsent(name, key -> globals.size());
+  }
+
+  private void error(Token token, String message) {
+    failed = true;
+    errors.reportError(new StaticError("line[" + token.line() + "] Error at '" + token.lexeme() + "': " + message));
+  }
+}
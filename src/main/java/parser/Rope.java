@@ -0,0 +1,90 @@
+package parser;
+
+import java.util.ArrayDeque;
+
+/**
+ * A Lox string made by concatenation. Concatenating only links the two halves, the chars are copied once, the
+ * first time the whole string is needed, and the flat string then replaces the halves. Results shorter than
+ * {@link #MIN_LENGTH} are copied right away, a rope would cost more than the copy.
+ * <p>
+ * Runtime strings are either a {@link String} or a rope, so compare them with {@link Values#isEqual(Object, Object)}
+ * rather than {@code equals}.
+ */
+public final class Rope implements CharSequence {
+  static final int MIN_LENGTH = 256;
+
+  private CharSequence left;
+  private CharSequence right;
+  private final int length;
+  private String flat;
+
+  private Rope(CharSequence left, CharSequence right, int length) {
+    this.left = left;
+    this.right = right;
+    this.length = length;
+  }
+
+  public static CharSequence concat(CharSequence left, CharSequence right) {
+    var length = left.length() + right.length();
+
+    if (length < 0) {
+      // What String concatenation throws past the maximum length.
+      throw new OutOfMemoryError("Overflow: String length out of range");
+    }
+
+    if (length < MIN_LENGTH) {
+      return left.toString().concat(right.toString());
+    }
+
+    return new Rope(left, right, length);
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    return toString().charAt(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().subSequence(start, end);
+  }
+
+  @Override
+  public String toString() {
+    if (flat == null) {
+      flat = flatten();
+      left = null;
+      right = null;
+    }
+
+    return flat;
+  }
+
+  // Walks the halves left to right with an explicit stack, accumulation builds ropes far deeper than the call stack.
+  private String flatten() {
+    var builder = new StringBuilder(length);
+    var pending = new ArrayDeque<CharSequence>();
+    CharSequence node = this;
+
+    while (true) {
+      if (node instanceof Rope rope && rope.flat == null) {
+        pending.push(rope.right);
+        node = rope.left;
+        continue;
+      }
+
+      builder.append(node instanceof Rope rope ? rope.flat : node);
+
+      if (pending.isEmpty()) {
+        return builder.toString();
+      }
+
+      node = pending.pop();
+    }
+  }
+}
@@ -1,14 +1,41 @@
 package parser;
 
-public sealed interface Stmt permits Stmt.Expression, Stmt.Print {
+import lexer.Token;
+
+import java.util.List;
+
+public sealed interface Stmt permits Stmt.Block, Stmt.Expression, Stmt.Function, Stmt.If, Stmt.Print, Stmt.Return,
+    Stmt.Var {
   interface Visitor<R> {
+    R visitBlockStmt(Stmt.Block stmt);
+
     R visitExpressionStmt(Stmt.Expression stmt);
 
+    R visitFunctionStmt(Stmt.Function stmt);
+
+    R visitIfStmt(Stmt.If stmt);
+
     R visitPrintStmt(Stmt.Print stmt);
+
+    R visitReturnStmt(Stmt.Return stmt);
+
+    R visitVarStmt(Stmt.Var stmt);
   }
 
   <R> R accept(Visitor<R> visitor);
 
+  // `frameSize` is the length of the frame the block runs in, 0 when it declares nothing and runs in the enclosing one.
+  record Block(List<Stmt> stmts, int frameSize) implements Stmt {
+    public Block(List<Stmt> stmts) {
+      this(stmts, Resolver.UNRESOLVED);
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitBlockStmt(this);
+    }
+  }
+
   record Expression(Expr expr) implements Stmt {
 
     @Override
@@ -17,6 +44,27 @@ public sealed interface Stmt permits Stmt.Expression, Stmt.Print {
     }
   }
 
+  // Declares `name` like a var statement does with `depth` and `slot`. The body runs in a frame of `frameSize` slots
+  // holding the parameters and the variables it declares itself, see LoxFunction.
+  record Function(Token name, List<Token> params, List<Stmt> body, int depth, int slot, int frameSize) implements Stmt {
+    public Function(Token name, List<Token> params, List<Stmt> body) {
+      this(name, params, body, Resolver.UNRESOLVED, Resolver.UNRESOLVED, Resolver.UNRESOLVED);
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitFunctionStmt(this);
+    }
+  }
+
+  // `elseBranch` is null without an else.
+  record If(Expr condition, Stmt thenBranch, Stmt elseBranch) implements Stmt {
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitIfStmt(this);
+    }
+  }
+
   record Print(Expr expr) implements Stmt {
 
     @Override
@@ -24,4 +72,24 @@ public sealed interface Stmt permits Stmt.Expression, Stmt.Print {
       return visitor.visitPrintStmt(this);
     }
   }
+
+  // A bare `return;` is parsed as returning nil.
+  record Return(Token keyword, Expr value) implements Stmt {
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitReturnStmt(this);
+    }
+  }
+
+  // A declaration without initializer is parsed as one initialized to nil. `depth` is 0 or Resolver.GLOBAL.
+  record Var(Token name, Expr initializer, int depth, int slot) implements Stmt {
+    public Var(Token name, Expr initializer) {
+      this(name, initializer, Resolver.UNRESOLVED, Resolver.UNRESOLVED);
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitVarStmt(this);
+    }
+  }
 }
@@ -0,0 +1,78 @@
+package parser;
+
+import output.OutputSink;
+
+/**
+ * Runtime semantics of Lox values shared by every execution engine.
+ */
+public final class Values {
+  public static final String OPERAND_MUST_BE_NUMBER = "Operand must be number.";
+  public static final String OPERANDS_MUST_BE_NUMBERS = "Operands must be a numbers.";
+  public static final String OPERANDS_MUST_BE_NUMBERS_OR_STRINGS = "Operands must be two numbers or two strings.";
+  public static final String CAN_ONLY_CALL = "Can only call functions and classes.";
+  public static final String STACK_OVERFLOW = "Stack overflow.";
+
+  private Values() {}
+
+  // instanceof rather than a pattern switch: this runs in nearly every program, and the switch bootstrap would
+  // add its method handle setup to startup.
+  public static boolean isTruthy(Object value) {
+    if (value instanceof Boolean booleanValue) {
+      return booleanValue;
+    }
+
+    return value != null;
+  }
+
+  public static boolean isEqual(Object value1, Object value2) {
+    if (value1 == null && value2 == null) {
+      return true;
+    }
+
+    if (value1 == null) {
+      return false;
+    }
+
+    if (value1 instanceof CharSequence string1 && value2 instanceof CharSequence string2) {
+      return string1.length() == string2.length() && string1.toString().equals(string2.toString());
+    }
+
+    return value1.equals(value2);
+  }
+
+  // Same as Double.equals, so NaN equals itself and 0 differs from -0.
+  public static boolean isEqual(double value1, double value2) {
+    return Double.doubleToLongBits(value1) == Double.doubleToLongBits(value2);
+  }
+
+  public static String stringify(Object value) {
+    if (value == null) {
+      return "nil";
+    }
+
+    return value instanceof Double number ? stringify((double) number) : value.toString();
+  }
+
+  public static String stringify(double value) {
+    return Math.floor(value) == value ? (long) value + "" : Double.toString(value);
+  }
+
+  // Prints stringify(value) as a line, numbers without building the string.
+  public static void println(OutputSink out, Object value) {
+    if (value instanceof Double number) {
+      println(out, (double) number);
+    } else {
+      out.println(stringify(value));
+    }
+  }
+
+  public static void println(OutputSink out, double value) {
+    if (Math.floor(value) == value) {
+      out.print((long) value);
+    } else {
+      out.print(value);
+    }
+
+    out.println();
+  }
+}
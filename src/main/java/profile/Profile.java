@@ -0,0 +1,242 @@
+package profile;
+
+import parser.Expr;
+import parser.Stmt;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Samples aggregated into a tree of frames, one frame per AST node on the path from a top-level statement, through the
+ * calls on it. A frame's line is its operator's, name's, keyword's or closing parenthesis' line; groupings and
+ * literals have no token and take the line of the node around them, other statements the smallest line in them, or
+ * none when they have no such token at all.
+ */
+public final class Profile {
+  private static final int NO_LINE = 0;
+
+  // Children are keyed by node identity, the same node reached the same way is the same frame.
+  private static final class Frame {
+    private final String name;
+    private final int line;
+    private final Map<Object, Frame> children = new IdentityHashMap<>();
+    private long samples;
+    private long allocated;
+
+    private Frame(String name, int line) {
+      this.name = name;
+      this.line = line;
+    }
+  }
+
+  public enum Weight {
+    SAMPLES,
+    ALLOCATED
+  }
+
+  private final Frame root = new Frame("(engine)", NO_LINE);
+  private long samples;
+  private long allocated;
+
+  // Called from the sampler thread only, the result is read after joining it.
+  void add(Object[] nodes, int count, long allocatedBytes) {
+    var frame = root;
+    for (var i = 0; i < count; i++) {
+      var line = frame.line;
+      frame = frame.children.computeIfAbsent(nodes[i], node -> frame(node, line));
+    }
+
+    frame.samples++;
+    frame.allocated += allocatedBytes;
+    samples++;
+    allocated += allocatedBytes;
+  }
+
+  public long samples() {
+    return samples;
+  }
+
+  public long allocated() {
+    return allocated;
+  }
+
+  /**
+   * Writes one {@code frame;frame;... weight} line per distinct stack, the collapsed format flamegraph.pl and
+   * speedscope read. Samples taken outside any statement are the {@code (engine)} stack.
+   */
+  public void writeCollapsed(Writer writer, Weight weight) throws IOException {
+    var stacks = new TreeMap<String, Long>();
+
+    walk((path, frame) -> {
+      var value = weight == Weight.SAMPLES ? frame.samples : frame.allocated;
+      if (value > 0) {
+        var names = path.isEmpty() ? List.of(root.name) : path.stream().map(on -> on.name).toList();
+        stacks.merge(String.join(";", names), value, Long::sum);
+      }
+    });
+
+    for (var stack : stacks.entrySet()) {
+      writer.write(stack.getKey());
+      writer.write(' ');
+      writer.write(Long.toString(stack.getValue()));
+      writer.write('\n');
+    }
+  }
+
+  // The `top` lines by samples taken in their own nodes, next to the share of samples they were anywhere on the stack.
+  public void printHotLines(PrintStream err, long top) {
+    // {self samples, total samples, self allocated} per line
+    var lines = new HashMap<Integer, long[]>();
+    var seen = new HashSet<Integer>();
+
+    walk((path, frame) -> {
+      if (path.isEmpty() || frame.samples == 0 && frame.allocated == 0) {
+        return;
+      }
+
+      var self = lines.computeIfAbsent(frame.line, line -> new long[3]);
+      self[0] += frame.samples;
+      self[2] += frame.allocated;
+
+      seen.clear();
+      for (var on : path) {
+        if (seen.add(on.line)) {
+          lines.computeIfAbsent(on.line, line -> new long[3])[1] += frame.samples;
+        }
+      }
+    });
+
+    err.printf("Profile: %d samples, %s allocated%n", samples, bytes(allocated));
+    err.printf("%8s %8s %8s %12s%n", "line", "self", "total", "allocated");
+
+    lines.entrySet().stream()
+        .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+        .limit(top)
+        .forEach(line -> err.printf("%8s %7.1f%% %7.1f%% %12s%n",
+            line.getKey() == NO_LINE ? "?" : line.getKey().toString(),
+            percent(line.getValue()[0]), percent(line.getValue()[1]), bytes(line.getValue()[2])));
+  }
+
+  // Visits every frame below the root with the path to it, depth first with an explicit stack since frames nest as
+  // deep as expressions do.
+  private void walk(BiConsumer<List<Frame>, Frame> visitor) {
+    visitor.accept(List.of(), root);
+
+    var path = new ArrayList<Frame>();
+    var pending = new ArrayDeque<Frame>(root.children.values());
+    var depths = new ArrayDeque<Integer>();
+    root.children.values().forEach(child -> depths.push(0));
+
+    while (!pending.isEmpty()) {
+      var frame = pending.pop();
+      var depth = depths.pop();
+
+      path.subList(depth, path.size()).clear();
+      path.add(frame);
+      visitor.accept(path, frame);
+
+      for (var child : frame.children.values()) {
+        pending.push(child);
+        depths.push(depth + 1);
+      }
+    }
+  }
+
+  private double percent(long count) {
+    return samples == 0 ? 0 : 100.0 * count / samples;
+  }
+
+  private static String bytes(long count) {
+    if (count < 1024) {
+      return count + " B";
+    }
+
+    return count < 1024 * 1024 ? String.format("%.1f KiB", count / 1024.0) : String.format("%.1f MiB", count / (1024.0 * 1024));
+  }
+
+  private static Frame frame(Object node, int outer) {
+    return switch (node) {
+      case Stmt.Print print -> frame("print", firstLine(print));
+      case Stmt.Expression expression -> frame("expression", firstLine(expression));
+      case Stmt.Var var -> frame("var " + var.name().lexeme(), var.name().line());
+      case Stmt.Block block -> frame("block", firstLine(block));
+      case Stmt.Function function -> frame("fun " + function.name().lexeme(), function.name().line());
+      case Stmt.If ifStmt -> frame("if", firstLine(ifStmt));
+      case Stmt.Return returnStmt -> frame("return", returnStmt.keyword().line());
+      case Expr.Assign assign -> frame("assign " + assign.name().lexeme(), assign.name().line());
+      case Expr.Binary binary -> frame(binary.operator().lexeme(), binary.operator().line());
+      case Expr.Call call -> frame("call", call.paren().line());
+      case Expr.Unary unary -> frame("unary " + unary.operator().lexeme(), unary.operator().line());
+      case Expr.Variable variable -> frame("variable " + variable.name().lexeme(), variable.name().line());
+      case Expr.Grouping grouping -> frame("group", outer);
+      case Expr.Literal literal -> frame("literal", outer);
+      default -> frame(node.getClass().getSimpleName(), outer);
+    };
+  }
+
+  private static Frame frame(String node, int line) {
+    return new Frame(line == NO_LINE ? node : node + " (line " + line + ")", line);
+  }
+
+  private static int firstLine(Stmt stmt) {
+    var line = Integer.MAX_VALUE;
+    var pending = new ArrayDeque<Object>();
+    pending.push(stmt);
+
+    while (!pending.isEmpty()) {
+      switch (pending.pop()) {
+        case Stmt.Block block -> block.stmts().forEach(pending::push);
+        case Stmt.Expression expression -> pending.push(expression.expr());
+        case Stmt.Print print -> pending.push(print.expr());
+        case Stmt.Function function -> line = Math.min(line, function.name().line());
+        case Stmt.If ifStmt -> {
+          if (ifStmt.elseBranch() != null) {
+            pending.push(ifStmt.elseBranch());
+          }
+          pending.push(ifStmt.thenBranch());
+          pending.push(ifStmt.condition());
+        }
+        case Stmt.Return returnStmt -> line = Math.min(line, returnStmt.keyword().line());
+        case Stmt.Var var -> {
+          line = Math.min(line, var.name().line());
+          pending.push(var.initializer());
+        }
+        case Expr.Assign assign -> {
+          line = Math.min(line, assign.name().line());
+          pending.push(assign.value());
+        }
+        case Expr.Binary binary -> {
+          line = Math.min(line, binary.operator().line());
+          pending.push(binary.right());
+          pending.push(binary.left());
+        }
+        case Expr.Unary unary -> {
+          line = Math.min(line, unary.operator().line());
+          pending.push(unary.right());
+        }
+        case Expr.Call call -> {
+          line = Math.min(line, call.paren().line());
+          pending.push(call.callee());
+          call.arguments().forEach(pending::push);
+        }
+        case Expr.Variable variable -> line = Math.min(line, variable.name().line());
+        case Expr.Grouping grouping -> pending.push(grouping.expr());
+        case Expr.Literal literal -> {
+        }
+        default -> throw new IllegalStateException();
+      }
+    }
+
+    return line == Integer.MAX_VALUE ? NO_LINE : line;
+  }
+}
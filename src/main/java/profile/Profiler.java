@@ -0,0 +1,112 @@
+package profile;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Samples which AST nodes the engine thread is in. The engine keeps a shadow stack of nodes with plain and opaque
+ * stores only, a daemon thread reads it every interval along with the bytes the engine thread allocated since the
+ * last sample, and adds both to a {@link Profile}. Reads race with the engine, a sample can mix two moments, which
+ * is fine for a statistical profile and keeps the engine side to a couple of stores per node.
+ */
+public final class Profiler {
+  private static final VarHandle STACK;
+  private static final VarHandle DEPTH;
+
+  static {
+    try {
+      var lookup = MethodHandles.lookup();
+      STACK = lookup.findVarHandle(Profiler.class, "stack", Object[].class);
+      DEPTH = lookup.findVarHandle(Profiler.class, "depth", int.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final long intervalNanos;
+  private final Profile profile = new Profile();
+  private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  // Written by the engine thread only.
+  private Object[] stack = new Object[64];
+  private int depth;
+
+  private Thread sampler;
+  private volatile boolean running;
+
+  public Profiler(long intervalNanos) {
+    this.intervalNanos = intervalNanos;
+  }
+
+  void enter(Object node) {
+    if (depth == stack.length) {
+      STACK.setOpaque(this, Arrays.copyOf(stack, depth * 2));
+    }
+
+    stack[depth] = node;
+    DEPTH.setOpaque(this, depth + 1);
+  }
+
+  void exit() {
+    DEPTH.setOpaque(this, depth - 1);
+  }
+
+  // Starts sampling the calling thread.
+  void start() {
+    var engine = Thread.currentThread();
+    running = true;
+    sampler = Thread.ofPlatform().daemon().name("lox-profiler").start(() -> sample(engine.threadId()));
+  }
+
+  void stop() {
+    running = false;
+    LockSupport.unpark(sampler);
+
+    try {
+      sampler.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    DEPTH.setOpaque(this, 0);
+  }
+
+  // Complete once the engine returned.
+  public Profile profile() {
+    return profile;
+  }
+
+  public long intervalNanos() {
+    return intervalNanos;
+  }
+
+  private void sample(long engine) {
+    var allocated = threads.getThreadAllocatedBytes(engine);
+    var frames = new Object[64];
+
+    while (running) {
+      LockSupport.parkNanos(intervalNanos);
+
+      var stack = (Object[]) STACK.getOpaque(this);
+      var depth = Math.min((int) DEPTH.getOpaque(this), stack.length);
+      if (frames.length < depth) {
+        frames = new Object[stack.length];
+      }
+
+      var count = 0;
+      while (count < depth && stack[count] != null) {
+        frames[count] = stack[count];
+        count++;
+      }
+
+      var now = threads.getThreadAllocatedBytes(engine);
+      profile.add(frames, count, now - allocated);
+      allocated = now;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package profile;
+
+import errors.Errors;
+import output.OutputSink;
+import parser.Budget;
+import parser.Expr;
+import parser.Interpreter;
+import parser.Stmt;
+
+/**
+ * The tree-walking interpreter, publishing the node it is in to a {@link Profiler} so samples map to Lox source
+ * instead of visitor frames.
+ */
+public class ProfilingInterpreter extends Interpreter {
+  private final Profiler profiler;
+
+  public ProfilingInterpreter(OutputSink out, Errors errors, Budget budget, Profiler profiler) {
+    super(out, errors, budget);
+    this.profiler = profiler;
+  }
+
+  @Override
+  public void interpret(Iterable<Stmt> stmts) {
+    profiler.start();
+    try {
+      super.interpret(stmts);
+    } finally {
+      profiler.stop();
+    }
+  }
+
+  // A runtime error skips the exits, but it also ends the run. Statements in blocks and called functions nest like
+  // expressions do.
+  @Override
+  public Object execute(Stmt stmt) {
+    profiler.enter(stmt);
+    var completion = super.execute(stmt);
+    profiler.exit();
+    return completion;
+  }
+
+  // The grouping's expression is not evaluated through evaluate(), see Interpreter.visitGroupingExpr.
+  @Override
+  public Object visitGroupingExpr(Expr.Grouping expr) {
+    profiler.enter(expr.expr());
+    var value = super.visitGroupingExpr(expr);
+    profiler.exit();
+    return value;
+  }
+
+  @Override
+  public Object evaluate(Expr expr) {
+    profiler.enter(expr);
+    var value = super.evaluate(expr);
+    profiler.exit();
+    return value;
+  }
+}
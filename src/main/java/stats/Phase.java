@@ -0,0 +1,91 @@
+package stats;
+
+import com.sun.management.ThreadMXBean;
+import jdk.jfr.FlightRecorder;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * A phase being measured, from {@link Stats#start(String)} to {@link #end()}. Counts can be set after the clock
+ * stopped, so computing them isn't billed to the phase, but are only worth computing when {@link #counting()} says
+ * someone will read them; the ones never set stay -1 and are left out.
+ */
+public final class Phase {
+  final String name;
+  private final boolean report;
+  // Loading an event class sets up all of Flight Recorder's metadata, which is most of a short run's startup, so
+  // events are only created once a recording has initialized it anyway.
+  private final PhaseEvent event = FlightRecorder.isInitialized() ? new PhaseEvent() : null;
+  private final long start;
+  private final long allocatedAtStart;
+
+  long nanos = -1;
+  long allocated = -1;
+  long tokens = -1;
+  long nodes = -1;
+  long statements = -1;
+  long printed = -1;
+
+  Phase(String name, boolean report) {
+    this.name = name;
+    this.report = report;
+    this.allocatedAtStart = report ? allocatedBytes() : 0;
+    if (event != null) {
+      event.begin();
+    }
+    this.start = System.nanoTime();
+  }
+
+  // True when --stats or a recording will use the counts, AST nodes for instance cost a walk over the tree.
+  public boolean counting() {
+    return report || event != null && event.isEnabled();
+  }
+
+  public Phase tokens(long count) {
+    tokens = count;
+    return this;
+  }
+
+  public Phase nodes(long count) {
+    nodes = count;
+    return this;
+  }
+
+  public Phase statements(long count) {
+    statements = count;
+    return this;
+  }
+
+  public Phase printed(long count) {
+    printed = count;
+    return this;
+  }
+
+  public void end() {
+    nanos = System.nanoTime() - start;
+    if (event != null) {
+      event.end();
+    }
+
+    if (report) {
+      allocated = allocatedBytes() - allocatedAtStart;
+    }
+  }
+
+  // The event keeps the time it ended at, committing it later only adds the counts.
+  void commit() {
+    if (event != null && nanos >= 0 && event.shouldCommit()) {
+      event.phase = name;
+      event.tokens = tokens;
+      event.nodes = nodes;
+      event.statements = statements;
+      event.printed = printed;
+      event.commit();
+    }
+  }
+
+  // Bytes allocated by this thread so far; phases that fan out to a pool only count the calling thread's share.
+  private static long allocatedBytes() {
+    return ((ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+  }
+}
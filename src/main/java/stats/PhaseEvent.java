@@ -0,0 +1,36 @@
+package stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One phase of a command, committed when a Flight Recorder recording enables {@code lox.Phase}. Counts that don't
+ * apply to the phase are -1.
+ */
+@Name("lox.Phase")
+@Label("Lox Phase")
+@Category("Lox")
+@Description("Scanning, parsing, execution or output of one command")
+@StackTrace(false)
+class PhaseEvent extends Event {
+  @Label("Phase")
+  String phase;
+
+  @Label("Tokens")
+  long tokens;
+
+  @Label("AST Nodes")
+  long nodes;
+
+  @Label("Statements")
+  long statements;
+
+  @Label("Printed")
+  @DataAmount
+  long printed;
+}
@@ -0,0 +1,107 @@
+package vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled unit of bytecode with its constant pools and a run-length encoded line table.
+ */
+public class Chunk {
+  byte[] code = new byte[256];
+  int count;
+
+  double[] numbers = new double[16];
+  int numberCount;
+  final List<Object> constants = new ArrayList<>();
+  private final Map<Object, Integer> poolIndexes = new HashMap<>();
+
+  // lineStarts[i] is the first code offset that belongs to source line lineNumbers[i].
+  private int[] lineStarts = new int[16];
+  private int[] lineNumbers = new int[16];
+  private int lineCount;
+
+  int maxStack;
+
+  void write(byte op, int line) {
+    if (count == code.length) {
+      code = Arrays.copyOf(code, count * 2);
+    }
+
+    if (lineCount == 0 || lineNumbers[lineCount - 1] != line) {
+      if (lineCount == lineStarts.length) {
+        lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        lineNumbers = Arrays.copyOf(lineNumbers, lineCount * 2);
+      }
+
+      lineStarts[lineCount] = count;
+      lineNumbers[lineCount] = line;
+      lineCount++;
+    }
+
+    code[count++] = op;
+  }
+
+  void writeShort(int value, int line) {
+    write((byte) (value >>> 8), line);
+    write((byte) value, line);
+  }
+
+  void writeInt(int value, int line) {
+    writeShort(value >>> 16, line);
+    writeShort(value, line);
+  }
+
+  // Overwrites the 4-byte operand at `offset`, a jump target known once the code jumped over is written.
+  void patchInt(int offset, int value) {
+    code[offset] = (byte) (value >>> 24);
+    code[offset + 1] = (byte) (value >>> 16);
+    code[offset + 2] = (byte) (value >>> 8);
+    code[offset + 3] = (byte) value;
+  }
+
+  int addNumber(double value) {
+    return poolIndexes.computeIfAbsent(value, key -> {
+      if (numberCount == numbers.length) {
+        numbers = Arrays.copyOf(numbers, numberCount * 2);
+      }
+
+      numbers[numberCount] = value;
+      return numberCount++;
+    });
+  }
+
+  int addConstant(Object value) {
+    return poolIndexes.computeIfAbsent(value, key -> {
+      constants.add(value);
+      return constants.size() - 1;
+    });
+  }
+
+  int line(int offset) {
+    var low = 0;
+    var high = lineCount - 1;
+
+    while (low < high) {
+      var mid = (low + high + 1) >>> 1;
+      if (lineStarts[mid] <= offset) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+
+    return lineCount == 0 ? 0 : lineNumbers[low];
+  }
+
+  void reset() {
+    count = 0;
+    numberCount = 0;
+    constants.clear();
+    poolIndexes.clear();
+    lineCount = 0;
+    maxStack = 0;
+  }
+}
@@ -0,0 +1,300 @@
+package vm;
+
+import lexer.Token;
+import parser.Budget;
+import parser.Expr;
+import parser.Resolver;
+import parser.Stmt;
+
+import java.util.ArrayDeque;
+
+/**
+ * Compiles statements to a {@link Chunk}, tracking the operand stack depth the chunk needs. Expressions are
+ * emitted in postorder from an explicit work stack rather than by recursion, so together with the flat operand stack
+ * of the {@link VM} arbitrarily deep expressions compile and run in constant Java stack depth. Each statement starts
+ * by charging the budget its own steps; function bodies compile to chunks of their own.
+ */
+public class Compiler implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+  private static final int MAX_SHORT_INDEX = 0xffff;
+
+  private final Chunk chunk;
+  private int line = 1;
+  private int stackDepth;
+
+  // Expressions still to visit and operators to emit once their operands are, popped in emission order.
+  private final ArrayDeque<Object> pending = new ArrayDeque<>();
+
+  private record Operator(byte op, int line, int stackEffect) {
+  }
+
+  // Stores the assigned value, left on the stack, once it is computed.
+  private record Store(Expr.Assign expr) {
+  }
+
+  // Calls once the callee and the arguments are on the stack.
+  private record Call(Expr.Call expr) {
+  }
+
+  public Compiler(Chunk chunk) {
+    this.chunk = chunk;
+  }
+
+  public void compile(Stmt stmt) {
+    statement(stmt);
+    emit(OpCode.RETURN, 0);
+  }
+
+  @Override
+  public Void visitBlockStmt(Stmt.Block stmt) {
+    if (stmt.frameSize() > 0) {
+      emit(OpCode.PUSH_FRAME, 0);
+      chunk.writeInt(stmt.frameSize(), line);
+    }
+
+    for (var inner : stmt.stmts()) {
+      statement(inner);
+    }
+
+    if (stmt.frameSize() > 0) {
+      emit(OpCode.POP_FRAME, 0);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitExpressionStmt(Stmt.Expression stmt) {
+    compile(stmt.expr());
+    emit(OpCode.POP, -1);
+    return null;
+  }
+
+  @Override
+  public Void visitFunctionStmt(Stmt.Function stmt) {
+    var prototype = new Prototype(stmt.name().lexeme(), stmt.params().size(), stmt.frameSize(), function(stmt));
+    line = stmt.name().line();
+    emit(OpCode.FUNCTION, 1);
+    chunk.writeInt(chunk.addConstant(prototype), line);
+    declare(stmt.depth(), stmt.slot());
+    return null;
+  }
+
+  @Override
+  public Void visitIfStmt(Stmt.If stmt) {
+    compile(stmt.condition());
+    var elseJump = emitJump(OpCode.JUMP_IF_FALSE, -1);
+    statement(stmt.thenBranch());
+
+    if (stmt.elseBranch() == null) {
+      chunk.patchInt(elseJump, chunk.count);
+      return null;
+    }
+
+    var endJump = emitJump(OpCode.JUMP, 0);
+    chunk.patchInt(elseJump, chunk.count);
+    statement(stmt.elseBranch());
+    chunk.patchInt(endJump, chunk.count);
+    return null;
+  }
+
+  @Override
+  public Void visitPrintStmt(Stmt.Print stmt) {
+    compile(stmt.expr());
+    emit(OpCode.PRINT, -1);
+    return null;
+  }
+
+  @Override
+  public Void visitReturnStmt(Stmt.Return stmt) {
+    compile(stmt.value());
+    line = stmt.keyword().line();
+    emit(OpCode.RETURN_VALUE, -1);
+    return null;
+  }
+
+  @Override
+  public Void visitVarStmt(Stmt.Var stmt) {
+    compile(stmt.initializer());
+    line = stmt.name().line();
+    declare(stmt.depth(), stmt.slot());
+    return null;
+  }
+
+  @Override
+  public Void visitAssignExpr(Expr.Assign expr) {
+    pending.push(new Store(expr));
+    pending.push(expr.value());
+    return null;
+  }
+
+  @Override
+  public Void visitBinaryExpr(Expr.Binary expr) {
+    var op = switch (expr.operator().type()) {
+      case Token.Type.PLUS -> OpCode.ADD;
+      case Token.Type.MINUS -> OpCode.SUBTRACT;
+      case Token.Type.STAR -> OpCode.MULTIPLY;
+      case Token.Type.SLASH -> OpCode.DIVIDE;
+      case Token.Type.EQUAL_EQUAL -> OpCode.EQUAL;
+      case Token.Type.BANG_EQUAL -> OpCode.NOT_EQUAL;
+      case Token.Type.GREATER -> OpCode.GREATER;
+      case Token.Type.GREATER_EQUAL -> OpCode.GREATER_EQUAL;
+      case Token.Type.LESS -> OpCode.LESS;
+      case Token.Type.LESS_EQUAL -> OpCode.LESS_EQUAL;
+      case Token.Type.AND -> OpCode.AND;
+      case Token.Type.OR -> OpCode.OR;
+      default -> throw new IllegalStateException("Unexpected binary operator: " + expr.operator().type());
+    };
+
+    pending.push(new Operator(op, expr.operator().line(), -1));
+    pending.push(expr.right());
+    pending.push(expr.left());
+    return null;
+  }
+
+  @Override
+  public Void visitCallExpr(Expr.Call expr) {
+    pending.push(new Call(expr));
+    for (var i = expr.arguments().size() - 1; i >= 0; i--) {
+      pending.push(expr.arguments().get(i));
+    }
+
+    pending.push(expr.callee());
+    return null;
+  }
+
+  @Override
+  public Void visitGroupingExpr(Expr.Grouping expr) {
+    pending.push(expr.expr());
+    return null;
+  }
+
+  @Override
+  public Void visitLiteralExpr(Expr.Literal expr) {
+    switch (expr.literal()) {
+      case null -> emit(OpCode.NIL, 1);
+      case Boolean value -> emit(value ? OpCode.TRUE : OpCode.FALSE, 1);
+      case Double value -> emitIndex(OpCode.NUMBER, OpCode.NUMBER_WIDE, chunk.addNumber(value));
+      default -> emitIndex(OpCode.CONSTANT, OpCode.CONSTANT_WIDE, chunk.addConstant(expr.literal()));
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visitUnaryExpr(Expr.Unary expr) {
+    var op = switch (expr.operator().type()) {
+      case Token.Type.MINUS -> OpCode.NEGATE;
+      case Token.Type.BANG -> OpCode.NOT;
+      default -> throw new IllegalStateException("Unexpected unary operator: " + expr.operator().type());
+    };
+
+    pending.push(new Operator(op, expr.operator().line(), 0));
+    pending.push(expr.right());
+    return null;
+  }
+
+  @Override
+  public Void visitVariableExpr(Expr.Variable expr) {
+    line = expr.name().line();
+
+    if (expr.depth() == Resolver.GLOBAL) {
+      emitVariable(OpCode.GET_GLOBAL, 1, expr.slot(), chunk.addConstant(expr.name()));
+    } else {
+      emitVariable(OpCode.GET_LOCAL, 1, expr.depth(), expr.slot());
+    }
+
+    return null;
+  }
+
+  private void statement(Stmt stmt) {
+    emit(OpCode.CHARGE, 0);
+    chunk.writeInt((int) Budget.steps(stmt), line);
+    stmt.accept(this);
+  }
+
+  // The body in a chunk of its own, returning nil when it runs off its end.
+  private static Chunk function(Stmt.Function stmt) {
+    var compiler = new Compiler(new Chunk());
+    compiler.line = stmt.name().line();
+
+    for (var inner : stmt.body()) {
+      compiler.statement(inner);
+    }
+
+    compiler.emit(OpCode.NIL, 1);
+    compiler.emit(OpCode.RETURN_VALUE, -1);
+    return compiler.chunk;
+  }
+
+  // Stores the value on top of the stack, popping it, in a newly declared variable.
+  private void declare(int depth, int slot) {
+    if (depth == Resolver.GLOBAL) {
+      emit(OpCode.DEFINE_GLOBAL, -1);
+      chunk.writeInt(slot, line);
+    } else {
+      emitVariable(OpCode.SET_LOCAL, 0, depth, slot);
+      emit(OpCode.POP, -1);
+    }
+  }
+
+  private void compile(Expr expr) {
+    pending.push(expr);
+
+    while (!pending.isEmpty()) {
+      switch (pending.pop()) {
+        case Operator operator -> {
+          line = operator.line();
+          emit(operator.op(), operator.stackEffect());
+        }
+        case Store store -> {
+          var assign = store.expr();
+          line = assign.name().line();
+
+          if (assign.depth() == Resolver.GLOBAL) {
+            emitVariable(OpCode.SET_GLOBAL, 0, assign.slot(), chunk.addConstant(assign.name()));
+          } else {
+            emitVariable(OpCode.SET_LOCAL, 0, assign.depth(), assign.slot());
+          }
+        }
+        case Call call -> {
+          var count = call.expr().arguments().size();
+          line = call.expr().paren().line();
+          emit(OpCode.CALL, -count);
+          chunk.write((byte) count, line);
+        }
+        case Expr next -> next.accept(this);
+        default -> throw new IllegalStateException();
+      }
+    }
+  }
+
+  private void emitIndex(byte op, byte wideOp, int index) {
+    if (index <= MAX_SHORT_INDEX) {
+      emit(op, 1);
+      chunk.writeShort(index, line);
+    } else {
+      emit(wideOp, 1);
+      chunk.writeInt(index, line);
+    }
+  }
+
+  // Returns the offset of the jump target to patch.
+  private int emitJump(byte op, int stackEffect) {
+    emit(op, stackEffect);
+    var offset = chunk.count;
+    chunk.writeInt(0, line);
+    return offset;
+  }
+
+  private void emitVariable(byte op, int stackEffect, int first, int second) {
+    emit(op, stackEffect);
+    chunk.writeInt(first, line);
+    chunk.writeInt(second, line);
+  }
+
+  private void emit(byte op, int stackEffect) {
+    chunk.write(op, line);
+    stackDepth += stackEffect;
+    chunk.maxStack = Math.max(chunk.maxStack, stackDepth);
+  }
+}
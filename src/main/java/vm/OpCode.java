@@ -0,0 +1,61 @@
+package vm;
+
+public final class OpCode {
+  // Push constants: NUMBER and CONSTANT take a 2-byte index into the chunk's number or object pool, their wide
+  // forms a 4-byte one.
+  public static final byte NUMBER = 0;
+  public static final byte CONSTANT = 1;
+  public static final byte NIL = 2;
+  public static final byte TRUE = 3;
+  public static final byte FALSE = 4;
+
+  public static final byte ADD = 5;
+  public static final byte SUBTRACT = 6;
+  public static final byte MULTIPLY = 7;
+  public static final byte DIVIDE = 8;
+  public static final byte NEGATE = 9;
+  public static final byte NOT = 10;
+
+  public static final byte EQUAL = 11;
+  public static final byte NOT_EQUAL = 12;
+  public static final byte GREATER = 13;
+  public static final byte GREATER_EQUAL = 14;
+  public static final byte LESS = 15;
+  public static final byte LESS_EQUAL = 16;
+  public static final byte AND = 17;
+  public static final byte OR = 18;
+
+  public static final byte PRINT = 19;
+  public static final byte POP = 20;
+  public static final byte RETURN = 21;
+
+  public static final byte NUMBER_WIDE = 22;
+  public static final byte CONSTANT_WIDE = 23;
+
+  // Variables, with 4-byte operands. Globals take their slot then the index of their name token in the object pool,
+  // DEFINE_GLOBAL only the slot; locals take the depth then the slot, see parser.Resolver.
+  public static final byte GET_GLOBAL = 24;
+  public static final byte SET_GLOBAL = 25;
+  public static final byte DEFINE_GLOBAL = 26;
+  public static final byte GET_LOCAL = 27;
+  public static final byte SET_LOCAL = 28;
+
+  // PUSH_FRAME takes the 4-byte size of the block's frame.
+  public static final byte PUSH_FRAME = 29;
+  public static final byte POP_FRAME = 30;
+
+  // Jumps take the 4-byte offset to continue at, JUMP_IF_FALSE pops the condition.
+  public static final byte JUMP = 31;
+  public static final byte JUMP_IF_FALSE = 32;
+
+  // Charges the budget the 4-byte number of steps of the statement that follows, see parser.Budget#steps.
+  public static final byte CHARGE = 33;
+
+  // FUNCTION takes the 4-byte index of a Prototype in the object pool and pushes it closed over the current frame.
+  // CALL takes the 1-byte argument count, the callee is below the arguments. RETURN_VALUE pops the result of a call.
+  public static final byte FUNCTION = 34;
+  public static final byte CALL = 35;
+  public static final byte RETURN_VALUE = 36;
+
+  private OpCode() {}
+}
@@ -0,0 +1,8 @@
+package vm;
+
+/**
+ * A compiled function declaration, what {@link OpCode#FUNCTION} closes over the current frame. Its body is a chunk
+ * of its own.
+ */
+record Prototype(String name, int arity, int frameSize, Chunk chunk) {
+}
@@ -0,0 +1,404 @@
+package vm;
+
+import errors.Errors;
+import errors.RuntimeError;
+import lexer.Token;
+import output.OutputSink;
+import parser.Budget;
+import parser.Engine;
+import parser.Globals;
+import parser.LoxFunction;
+import parser.Stmt;
+import parser.Values;
+
+import java.util.Arrays;
+
+/**
+ * Stack-based bytecode interpreter. Numbers stay unboxed on the operand stack: a slot holds a number when its
+ * {@code values} entry is {@link #NUMBER}, the number itself lives in the parallel {@code numbers} array.
+ * <p>
+ * Calls don't recurse in Java. A call saves where the caller was on an explicit call stack and the loop carries on
+ * in the callee's chunk, whose operands start where the callee was on the operand stack, so its result simply ends up
+ * in that slot. Returns unwind by restoring the saved state, nothing is thrown.
+ * <p>
+ * Functions of other engines sharing the {@link Globals} are called through {@link LoxFunction#call(Object[], int)}.
+ * When one calls back into this VM, the nested run keeps above the stack entries of the runs still going.
+ */
+public class VM implements Engine {
+  private static final Object NUMBER = new Object();
+  private static final int MAX_CALL_DEPTH = 1 << 16;
+
+  private final OutputSink out;
+  private final Errors errors;
+  private final Budget budget;
+
+  private final Globals globals;
+
+  private final Chunk chunk = new Chunk();
+  private Object[] values = new Object[64];
+  private double[] numbers = new double[64];
+
+  // The callers of the running function, innermost last: chunk, where to go on in it, its frame, and the stack slot
+  // of the callee the result replaces.
+  private Chunk[] callChunks = new Chunk[16];
+  private int[] callIps = new int[16];
+  private Object[][] callFrames = new Object[16][];
+  private int[] callBases = new int[16];
+  // Where a nested run starts on the operand stack and the call stack, zero unless a run called out.
+  private int stackTop;
+  private int callTop;
+
+  public VM(OutputSink out, Errors errors) {
+    this(out, errors, Budget.unlimited());
+  }
+
+  public VM(OutputSink out, Errors errors, Budget budget) {
+    this(out, errors, budget, new Globals());
+  }
+
+  public VM(OutputSink out, Errors errors, Budget budget, Globals globals) {
+    this.out = out;
+    this.errors = errors;
+    this.budget = budget;
+    this.globals = globals;
+  }
+
+  @Override
+  public void interpret(Iterable<Stmt> stmts) {
+    try {
+      for (var stmt : stmts) {
+        chunk.reset();
+        new Compiler(chunk).compile(stmt);
+        run(chunk, null);
+      }
+    } catch (RuntimeError error) {
+      errors.reportError(error);
+    }
+  }
+
+  // Runs a top-level chunk, or a function's body in its frame and returns its result. Reentrant through functions of
+  // other engines only, the run's own calls don't recurse.
+  Object run(Chunk chunk, Object[] frame) {
+    var start = stackTop;
+    var first = callTop;
+    if (values.length < start + chunk.maxStack) {
+      grow(start + chunk.maxStack);
+    }
+
+    var code = chunk.code;
+    var values = this.values;
+    var numbers = this.numbers;
+    var sp = start;
+    var ip = 0;
+    var calls = first;
+    // Operand stack slots used so far, cleared when the run ends.
+    var used = start + chunk.maxStack;
+
+    while (true) {
+      var op = code[ip++];
+
+      switch (op) {
+        case OpCode.NUMBER -> {
+          values[sp] = NUMBER;
+          numbers[sp++] = chunk.numbers[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+          ip += 2;
+        }
+        case OpCode.CONSTANT -> {
+          values[sp++] = chunk.constants.get(((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff));
+          ip += 2;
+        }
+        case OpCode.NUMBER_WIDE -> {
+          values[sp] = NUMBER;
+          numbers[sp++] = chunk.numbers[readInt(code, ip)];
+          ip += 4;
+        }
+        case OpCode.CONSTANT_WIDE -> {
+          values[sp++] = chunk.constants.get(readInt(code, ip));
+          ip += 4;
+        }
+        case OpCode.NIL -> values[sp++] = null;
+        case OpCode.TRUE -> values[sp++] = true;
+        case OpCode.FALSE -> values[sp++] = false;
+        case OpCode.ADD -> {
+          sp--;
+          if (values[sp - 1] == NUMBER && values[sp] == NUMBER) {
+            numbers[sp - 1] += numbers[sp];
+          } else if (values[sp - 1] instanceof CharSequence s1 && values[sp] instanceof CharSequence s2) {
+            values[sp - 1] = budget.concat(s1, s2);
+          } else {
+            throw error(chunk, ip, Values.OPERANDS_MUST_BE_NUMBERS_OR_STRINGS);
+          }
+        }
+        case OpCode.SUBTRACT -> {
+          sp = checkNumbers(chunk, ip, values, sp);
+          numbers[sp - 1] -= numbers[sp];
+        }
+        case OpCode.MULTIPLY -> {
+          sp = checkNumbers(chunk, ip, values, sp);
+          numbers[sp - 1] *= numbers[sp];
+        }
+        case OpCode.DIVIDE -> {
+          sp = checkNumbers(chunk, ip, values, sp);
+          numbers[sp - 1] /= numbers[sp];
+        }
+        case OpCode.NEGATE -> {
+          if (values[sp - 1] != NUMBER) {
+            throw error(chunk, ip, Values.OPERAND_MUST_BE_NUMBER);
+          }
+          numbers[sp - 1] = -numbers[sp - 1];
+        }
+        case OpCode.NOT -> values[sp - 1] = !isTruthy(values[sp - 1]);
+        case OpCode.EQUAL -> {
+          sp--;
+          values[sp - 1] = isEqual(values, numbers, sp - 1, sp);
+        }
+        case OpCode.NOT_EQUAL -> {
+          sp--;
+          values[sp - 1] = !isEqual(values, numbers, sp - 1, sp);
+        }
+        case OpCode.GREATER -> {
+          sp = checkNumbers(chunk, ip, values, sp);
+          values[sp - 1] = numbers[sp - 1] > numbers[sp];
+        }
+        case OpCode.GREATER_EQUAL -> {
+          sp = checkNumbers(chunk, ip, values, sp);
+          values[sp - 1] = numbers[sp - 1] >= numbers[sp];
+        }
+        case OpCode.LESS -> {
+          sp = checkNumbers(chunk, ip, values, sp);
+          values[sp - 1] = numbers[sp - 1] < numbers[sp];
+        }
+        case OpCode.LESS_EQUAL -> {
+          sp = checkNumbers(chunk, ip, values, sp);
+          values[sp - 1] = numbers[sp - 1] <= numbers[sp];
+        }
+        case OpCode.AND -> {
+          sp--;
+          values[sp - 1] = isTruthy(values[sp - 1]) && isTruthy(values[sp]);
+        }
+        case OpCode.OR -> {
+          sp--;
+          values[sp - 1] = isTruthy(values[sp - 1]) || isTruthy(values[sp]);
+        }
+        case OpCode.PRINT -> {
+          sp--;
+          if (values[sp] == NUMBER) {
+            Values.println(out, numbers[sp]);
+          } else {
+            Values.println(out, values[sp]);
+          }
+        }
+        case OpCode.GET_GLOBAL -> {
+          var name = (Token) chunk.constants.get(readInt(code, ip + 4));
+          sp = push(values, numbers, sp, globals.get(readInt(code, ip), name.lexeme(), name.line()));
+          ip += 8;
+        }
+        case OpCode.SET_GLOBAL -> {
+          var name = (Token) chunk.constants.get(readInt(code, ip + 4));
+          globals.assign(readInt(code, ip), box(values, numbers, sp - 1), name.lexeme(), name.line());
+          ip += 8;
+        }
+        case OpCode.DEFINE_GLOBAL -> {
+          sp--;
+          globals.define(readInt(code, ip), box(values, numbers, sp));
+          ip += 4;
+        }
+        case OpCode.GET_LOCAL -> {
+          sp = push(values, numbers, sp, frame(frame, readInt(code, ip))[readInt(code, ip + 4)]);
+          ip += 8;
+        }
+        case OpCode.SET_LOCAL -> {
+          frame(frame, readInt(code, ip))[readInt(code, ip + 4)] = box(values, numbers, sp - 1);
+          ip += 8;
+        }
+        case OpCode.PUSH_FRAME -> {
+          var inner = new Object[readInt(code, ip)];
+          inner[0] = frame;
+          frame = inner;
+          ip += 4;
+        }
+        case OpCode.POP_FRAME -> frame = (Object[]) frame[0];
+        case OpCode.JUMP -> ip = readInt(code, ip);
+        case OpCode.JUMP_IF_FALSE -> {
+          sp--;
+          ip = isTruthy(values[sp]) ? ip + 4 : readInt(code, ip);
+        }
+        case OpCode.CHARGE -> {
+          budget.charge(readInt(code, ip));
+          ip += 4;
+        }
+        case OpCode.FUNCTION -> {
+          values[sp++] = new VmFunction(this, (Prototype) chunk.constants.get(readInt(code, ip)), frame);
+          ip += 4;
+        }
+        case OpCode.CALL -> {
+          var count = code[ip] & 0xff;
+          var base = sp - count - 1;
+          if (!(values[base] instanceof VmFunction function)) {
+            if (!(values[base] instanceof LoxFunction other) || other.arity() != count) {
+              throw LoxFunction.callError(values[base], count, chunk.line(ip - 1));
+            }
+
+            var callee = other.frame();
+            for (var i = 1; i <= count; i++) {
+              callee[i] = box(values, numbers, base + i);
+            }
+
+            stackTop = used;
+            callTop = calls;
+            Object result;
+            try {
+              result = other.call(callee, chunk.line(ip - 1));
+            } finally {
+              stackTop = start;
+              callTop = first;
+            }
+
+            // A nested run may have grown the stack.
+            values = this.values;
+            numbers = this.numbers;
+            sp = push(values, numbers, base, result);
+            ip++;
+            continue;
+          }
+
+          if (function.arity() != count) {
+            throw LoxFunction.callError(function, count, chunk.line(ip - 1));
+          }
+
+          if (calls == MAX_CALL_DEPTH) {
+            throw error(chunk, ip, Values.STACK_OVERFLOW);
+          }
+
+          var callee = function.frame();
+          for (var i = 1; i <= count; i++) {
+            callee[i] = box(values, numbers, base + i);
+          }
+
+          if (calls == callChunks.length) {
+            growCalls();
+          }
+
+          callChunks[calls] = chunk;
+          callIps[calls] = ip + 1;
+          callFrames[calls] = frame;
+          callBases[calls] = base;
+          calls++;
+
+          chunk = function.chunk;
+          code = chunk.code;
+          ip = 0;
+          frame = callee;
+          sp = base;
+
+          used = Math.max(used, base + chunk.maxStack);
+          if (values.length < used) {
+            grow(used);
+            values = this.values;
+            numbers = this.numbers;
+          }
+        }
+        case OpCode.RETURN_VALUE -> {
+          sp--;
+          if (calls == first) {
+            var result = box(values, numbers, sp);
+            clear(start, used, first);
+            return result;
+          }
+
+          calls--;
+          var base = callBases[calls];
+          values[base] = values[sp];
+          numbers[base] = numbers[sp];
+          sp = base + 1;
+
+          chunk = callChunks[calls];
+          code = chunk.code;
+          ip = callIps[calls];
+          frame = callFrames[calls];
+        }
+        case OpCode.POP -> sp--;
+        case OpCode.RETURN -> {
+          clear(start, used, first);
+          return null;
+        }
+        default -> throw new IllegalStateException("Unknown opcode: " + op);
+      }
+    }
+  }
+
+  private void grow(int size) {
+    var length = Math.max(size, values.length * 2);
+    values = Arrays.copyOf(values, length);
+    numbers = Arrays.copyOf(numbers, length);
+  }
+
+  private void growCalls() {
+    var length = callChunks.length * 2;
+    callChunks = Arrays.copyOf(callChunks, length);
+    callIps = Arrays.copyOf(callIps, length);
+    callFrames = Arrays.copyOf(callFrames, length);
+    callBases = Arrays.copyOf(callBases, length);
+  }
+
+  // Drops references so printed or discarded values, and the frames of finished calls, can be collected.
+  private void clear(int start, int used, int first) {
+    Arrays.fill(values, start, used, null);
+    Arrays.fill(callChunks, first, callChunks.length, null);
+    Arrays.fill(callFrames, first, callFrames.length, null);
+  }
+
+  // Pops the right operand after checking both operands are numbers, returns the new stack pointer.
+  private static int checkNumbers(Chunk chunk, int ip, Object[] values, int sp) {
+    if (values[sp - 2] != NUMBER || values[sp - 1] != NUMBER) {
+      throw error(chunk, ip, Values.OPERANDS_MUST_BE_NUMBERS);
+    }
+
+    return sp - 1;
+  }
+
+  private static Object[] frame(Object[] frame, int depth) {
+    for (var i = 0; i < depth; i++) {
+      frame = (Object[]) frame[0];
+    }
+
+    return frame;
+  }
+
+  // Pushes a value coming from a variable, numbers are unboxed.
+  private static int push(Object[] values, double[] numbers, int sp, Object value) {
+    if (value instanceof Double number) {
+      values[sp] = NUMBER;
+      numbers[sp] = number;
+    } else {
+      values[sp] = value;
+    }
+
+    return sp + 1;
+  }
+
+  // The value in `slot` as a variable holds it, numbers boxed.
+  private static Object box(Object[] values, double[] numbers, int slot) {
+    return values[slot] == NUMBER ? (Object) numbers[slot] : values[slot];
+  }
+
+  private static int readInt(byte[] code, int ip) {
+    return (code[ip] & 0xff) << 24 | (code[ip + 1] & 0xff) << 16 | (code[ip + 2] & 0xff) << 8 | (code[ip + 3] & 0xff);
+  }
+
+  private static boolean isTruthy(Object value) {
+    return value == NUMBER || Values.isTruthy(value);
+  }
+
+  private static boolean isEqual(Object[] values, double[] numbers, int left, int right) {
+    if (values[left] == NUMBER || values[right] == NUMBER) {
+      return values[left] == values[right] && Values.isEqual(numbers[left], numbers[right]);
+    }
+
+    return Values.isEqual(values[left], values[right]);
+  }
+
+  private static RuntimeError error(Chunk chunk, int ip, String message) {
+    return new RuntimeError(message, chunk.line(ip - 1));
+  }
+}
@@ -0,0 +1,20 @@
+package vm;
+
+import parser.LoxFunction;
+
+// A function declared to a VM. Calls from its own code are made by the run loop, this only runs one from outside.
+final class VmFunction extends LoxFunction {
+  private final VM vm;
+  final Chunk chunk;
+
+  VmFunction(VM vm, Prototype prototype, Object[] closure) {
+    super(prototype.name(), prototype.arity(), prototype.frameSize(), closure);
+    this.vm = vm;
+    this.chunk = prototype.chunk();
+  }
+
+  @Override
+  public Object call(Object[] frame) {
+    return vm.run(chunk, frame);
+  }
+}
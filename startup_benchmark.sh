@@ -0,0 +1,45 @@
+#!/bin/sh
+#
+# Compares startup with and without the AppCDS archive `mvn package` builds, over the training scripts in src/cds.
+# Prints the mean wall time of each short run: stdout is flushed when a run ends, so that is also its time to first
+# output.
+#
+# Usage: ./startup_benchmark.sh [runs]   (default 20, needs a `date` that knows %N)
+
+set -e
+
+dir=/tmp/codecrafters-build-interpreter-java
+jar=$dir/codecrafters-interpreter.jar
+archive=$dir/codecrafters-interpreter.jsa
+scripts=$(dirname "$0")/src/cds
+runs=${1:-20}
+
+if [ ! -f "$archive" ]; then
+  echo "No archive at $archive, build first: mvn -B package -Ddir=$dir" >&2
+  exit 1
+fi
+
+# Mean milliseconds of `java "$@"` over $runs runs.
+mean() {
+  total=0
+  i=0
+  while [ "$i" -lt "$runs" ]; do
+    start=$(date +%s%N)
+    java "$@" > /dev/null 2>&1 || true
+    end=$(date +%s%N)
+    total=$((total + end - start))
+    i=$((i + 1))
+  done
+  echo $((total / runs / 1000000))
+}
+
+printf '%-10s %-20s %10s %10s\n' command script "jdk cds" appcds
+while read -r command script; do
+  case $command in
+    '' | '#'*) continue ;;
+  esac
+
+  before=$(mean --enable-preview -jar "$jar" "$command" "$scripts/$script")
+  after=$(mean -XX:SharedArchiveFile="$archive" -Xlog:cds=off -Xlog:cds+dynamic=off --enable-preview -jar "$jar" "$command" "$scripts/$script")
+  printf '%-10s %-20s %7s ms %7s ms\n' "$command" "$script" "$before" "$after"
+done < "$scripts/manifest.txt"
@@ -21,4 +21,8 @@ set -e # Exit early if any commands fail
 #
 # - Edit this to change how your program runs locally
 # - Edit .codecrafters/run.sh to change how your program runs remotely
-exec java --enable-preview -jar /tmp/codecrafters-build-interpreter-java/codecrafters-interpreter.jar "$@"
+#
+# The class data archive is built by `mvn package` from a training run. A missing or stale one is skipped, and the
+# -Xlog options keep the JVM from saying so on stdout.
+exec java -XX:SharedArchiveFile=/tmp/codecrafters-build-interpreter-java/codecrafters-interpreter.jsa -Xlog:cds=off -Xlog:cds+dynamic=off \
+  --enable-preview -jar /tmp/codecrafters-build-interpreter-java/codecrafters-interpreter.jar "$@"